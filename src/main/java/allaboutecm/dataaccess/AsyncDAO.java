@@ -0,0 +1,105 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+
+import java.util.Collection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs the DAO operations on an executor and returns futures of their results, so callers can
+ * start independent lookups together and compose them without waiting on each.
+ *
+ * With an executor of more than one thread the DAO must be safe to share between threads,
+ * such as a Neo4jDAO over a SessionFactory. When the executor rejects an operation, because
+ * its queue is full, the returned future fails with RejectedExecutionException.
+ */
+public class AsyncDAO {
+    private final DAO dao;
+    private final Executor executor;
+
+    public AsyncDAO(DAO dao, Executor executor) {
+        Validate.notNull(dao);
+        Validate.notNull(executor);
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    /**
+     * An executor of the number of threads, holding at most queueCapacity waiting tasks and
+     * rejecting any more. Its threads are daemons named after the prefix.
+     */
+    public static ThreadPoolExecutor boundedExecutor(String prefix, int threads, int queueCapacity) {
+        Validate.notNull(prefix);
+        if (threads <= 0)
+            throw new IllegalArgumentException("threads must be positive");
+        if (queueCapacity <= 0)
+            throw new IllegalArgumentException("queueCapacity must be positive");
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setNameFormat(prefix + "-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Runs the operation on the executor, a rejection fails the future instead of being thrown.
+     */
+    public static <R> CompletableFuture<R> supply(Supplier<R> operation, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<R> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    public DAO getDAO() {
+        return dao;
+    }
+
+    public <T extends Entity> CompletableFuture<T> load(Class<T> clazz, Long id) {
+        return supply(() -> dao.load(clazz, id), executor);
+    }
+
+    public <T extends Entity> CompletableFuture<T> createOrUpdate(T entity) {
+        return supply(() -> dao.createOrUpdate(entity), executor);
+    }
+
+    public <T extends Entity> CompletableFuture<Collection<T>> createOrUpdateAll(Collection<T> entities) {
+        return supply(() -> dao.createOrUpdateAll(entities), executor);
+    }
+
+    public <T extends Entity> CompletableFuture<Collection<T>> loadAll(Class<T> clazz) {
+        return supply(() -> dao.loadAll(clazz), executor);
+    }
+
+    public <T extends Entity> CompletableFuture<Void> delete(T entity) {
+        return supply(() -> {
+            dao.delete(entity);
+            return null;
+        }, executor);
+    }
+
+    public CompletableFuture<Musician> findMusicianByName(String name) {
+        return supply(() -> dao.findMusicianByName(name), executor);
+    }
+
+    public CompletableFuture<Album> findAlbumByYearNumberName(Integer releaseYear, String recordNumber, String name) {
+        return supply(() -> dao.findAlbumByYearNumberName(releaseYear, recordNumber, name), executor);
+    }
+
+    public CompletableFuture<MusicalInstrument> findMusicalInstrumentByName(String name) {
+        return supply(() -> dao.findMusicalInstrumentByName(name), executor);
+    }
+}
@@ -0,0 +1,30 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+
+/**
+ * Notified by a DAO after an entity has been written, so that state derived from the
+ * store can be maintained without reloading it.
+ *
+ * Listeners are called on the writing thread once the write has been committed.
+ */
+public interface ChangeListener {
+    /**
+     * Called after the entity has been created or updated, and before that for each of the
+     * related entities the save created along with it. A related entity that was stored
+     * already is not notified, it has to be saved itself for its changes to be seen.
+     */
+    void onSave(Entity entity);
+
+    /**
+     * Called after the entity has been deleted.
+     */
+    void onDelete(Entity entity);
+
+    /**
+     * Called after a bulk delete of entities of the class, which were deleted without being
+     * loaded, so which ones is not known. Does nothing unless overridden.
+     */
+    default void onDeleteAll(Class<? extends Entity> type) {
+    }
+}
@@ -4,18 +4,63 @@ import allaboutecm.model.Album;
 import allaboutecm.model.Entity;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
+import org.neo4j.ogm.cypher.Filters;
 
 import java.util.Collection;
+import java.util.stream.Stream;
 
 public interface DAO {
     <T extends Entity> T load(Class<T> clazz, Long id);
 
     <T extends Entity> T createOrUpdate(T entity);
 
+    /**
+     * Creates or updates every entity, as createOrUpdate would one by one, and returns them.
+     */
+    <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities);
+
     <T extends Entity> Collection<T> loadAll(Class<T> clazz);
 
+    /**
+     * Loads the entities of the class with the ids, ids without one are left out.
+     */
+    <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids);
+
+    /**
+     * Reads one int field of every entity of the class into an IntProjection, without loading
+     * the entities. A missing value is read as 0.
+     *
+     * @throws IllegalArgumentException if the class has no int field of that name
+     */
+    <T extends Entity> IntProjection projectInt(Class<T> clazz, String field);
+
+    /**
+     * Streams the entities of the class, fetched lazily pageSize at a time, so a scan holds
+     * a bounded number of them. The stream should be closed if it is not read to the end.
+     */
+    <T extends Entity> Stream<T> stream(Class<T> clazz, int pageSize);
+
+    /**
+     * Loads the named relationship fields of the entities, all of the same class, in place.
+     * Each relationship is fetched for all the entities at once.
+     *
+     * @throws IllegalArgumentException if a field is not a relationship of the class
+     */
+    <T extends Entity> void prefetch(Class<T> clazz, Collection<T> entities, String... relationships);
+
     <T extends Entity> void delete(T entity);
 
+    /**
+     * Deletes the entities of the class matching the filters, with their relationships, in the
+     * store and without loading them, and returns how many were deleted.
+     */
+    <T extends Entity> long deleteWhere(Class<T> clazz, Filters filters);
+
+    /**
+     * Deletes every entity of the class, as deleteWhere with no filter.
+     */
+    <T extends Entity> long deleteAll(Class<T> clazz);
+
     Musician findMusicianByName(String name);
 
     //
@@ -23,4 +68,11 @@ public interface DAO {
     Album findAlbumByYearNumberName(Integer releaseYear, String recordNumber, String name);
 
     MusicalInstrument findMusicalInstrumentByName(String name);
+
+    /**
+     * Registers a listener notified after every createOrUpdate and delete.
+     */
+    void addChangeListener(ChangeListener listener);
+
+    void removeChangeListener(ChangeListener listener);
 }
@@ -0,0 +1,93 @@
+package allaboutecm.dataaccess;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * One int field of every entity of a class, in two parallel columns: the entity ids and the
+ * values, without any entity object. The arrays are shared, not copied.
+ */
+public final class IntProjection {
+    private final long[] ids;
+    private final int[] values;
+
+    public IntProjection(long[] ids, int[] values) {
+        if (ids == null || values == null)
+            throw new IllegalArgumentException("ids and values cannot be null");
+        if (ids.length != values.length)
+            throw new IllegalArgumentException("ids and values should have the same length");
+        this.ids = ids;
+        this.values = values;
+    }
+
+    public long[] getIds() {
+        return ids;
+    }
+
+    public int[] getValues() {
+        return values;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * The ids of the k entities with the largest values, in no particular order. Entities tied
+     * with the k-th value are taken by smallest id, so that no more than k are ever returned.
+     * The k are selected in place in expected linear time, without sorting the values.
+     */
+    public long[] topIds(int k) {
+        if (k <= 0)
+            return new long[0];
+        if (k >= values.length)
+            return ids;
+
+        int[] positions = new int[values.length];
+        for (int i = 0; i < positions.length; i++)
+            positions[i] = i;
+        select(positions, k);
+        long[] top = new long[k];
+        for (int i = 0; i < k; i++)
+            top[i] = ids[positions[i]];
+        return top;
+    }
+
+    /**
+     * Quickselect, moves the k positions ranked first to the front of the array.
+     */
+    private void select(int[] positions, int k) {
+        int from = 0;
+        int to = positions.length - 1;
+        while (from < to) {
+            swap(positions, ThreadLocalRandom.current().nextInt(from, to + 1), to);
+            int pivot = positions[to];
+            int store = from;
+            for (int i = from; i < to; i++) {
+                if (isBefore(positions[i], pivot))
+                    swap(positions, i, store++);
+            }
+            swap(positions, store, to);
+            if (store == k - 1)
+                return;
+            if (store > k - 1)
+                to = store - 1;
+            else
+                from = store + 1;
+        }
+    }
+
+    /**
+     * Larger values first, then smaller ids.
+     */
+    private boolean isBefore(int a, int b) {
+        if (values[a] != values[b])
+            return values[a] > values[b];
+        return ids[a] < ids[b];
+    }
+
+    private static void swap(int[] positions, int i, int j) {
+        int swapped = positions[i];
+        positions[i] = positions[j];
+        positions[j] = swapped;
+    }
+}
@@ -0,0 +1,128 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Entity;
+import allaboutecm.model.NaturalId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.neo4j.ogm.annotation.Property;
+
+import java.lang.reflect.Field;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The properties that identify an entity of a class independently of its id, read from the
+ * fields marked with NaturalId: name for Musician, (albumName, recordNumber, releaseYear)
+ * for Album and musicalInstrumentName for MusicalInstrument.
+ *
+ * The properties are named as stored in the graph, which is the name of their Property
+ * annotation and not always the name of the field, and are ordered by that name.
+ */
+public final class NaturalKey<T extends Entity> {
+    private static final Map<Class<?>, Optional<NaturalKey<?>>> KEYS = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final List<Field> fields;
+    private final List<String> properties;
+
+    private NaturalKey(Class<T> type, List<Field> fields) {
+        this.type = type;
+        this.fields = ImmutableList.copyOf(fields);
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        for (Field field : fields)
+            names.add(propertyName(field));
+        this.properties = names.build();
+    }
+
+    /**
+     * Returns the natural key of the class, or null when none of its fields is a NaturalId.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends Entity> NaturalKey<T> of(Class<T> type) {
+        return (NaturalKey<T>) KEYS.computeIfAbsent(type, NaturalKey::find).orElse(null);
+    }
+
+    private static Optional<NaturalKey<?>> find(Class<?> type) {
+        List<Field> fields = Lists.newArrayList();
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (field.isAnnotationPresent(NaturalId.class)) {
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+        }
+        if (fields.isEmpty())
+            return Optional.empty();
+        fields.sort(Comparator.comparing(NaturalKey::propertyName));
+        @SuppressWarnings("unchecked")
+        NaturalKey<?> key = new NaturalKey<>((Class<Entity>) type, fields);
+        return Optional.of(key);
+    }
+
+    private static String propertyName(Field field) {
+        Property property = field.getAnnotation(Property.class);
+        if (property != null && !property.name().isEmpty())
+            return property.name();
+        return field.getName();
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * The node label of the class.
+     */
+    public String getLabel() {
+        return type.getSimpleName();
+    }
+
+    /**
+     * The names of the key properties as stored in the graph.
+     */
+    public List<String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * The names of the key fields, in the order of getProperties.
+     */
+    public List<String> getFieldNames() {
+        List<String> names = Lists.newArrayListWithCapacity(fields.size());
+        for (Field field : fields)
+            names.add(field.getName());
+        return names;
+    }
+
+    /**
+     * The key values of the entity, in the order of getProperties. Lists of values are
+     * equal exactly when the entities are, so they can be used as map keys.
+     */
+    public List<Object> values(T entity) {
+        List<Object> values = Lists.newArrayListWithCapacity(fields.size());
+        for (Field field : fields) {
+            try {
+                values.add(field.get(entity));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot read " + field, e);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The key values of the entity by property name.
+     */
+    public Map<String, Object> toMap(T entity) {
+        List<Object> keyValues = values(entity);
+        Map<String, Object> map = Maps.newLinkedHashMap();
+        for (int i = 0; i < properties.size(); i++)
+            map.put(properties.get(i), keyValues.get(i));
+        return map;
+    }
+}
@@ -0,0 +1,126 @@
+package allaboutecm.dataaccess;
+
+import org.neo4j.ogm.cypher.BooleanOperator;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.function.PropertyComparison;
+
+import java.util.List;
+
+/**
+ * What a Filter comparing a property with a value compares, read once so that a DAO can
+ * evaluate the filter or rewrite it without changing the Filter its caller gave.
+ *
+ * OGM 3.2 keeps the operator of a PropertyComparison on the Filter, behind its only getter,
+ * which is deprecated. This is the one place reading it.
+ */
+public final class PropertyFilter {
+    private final String propertyName;
+    private final ComparisonOperator operator;
+    private final Object value;
+    private final BooleanOperator booleanOperator;
+    private final boolean negated;
+
+    private PropertyFilter(String propertyName, ComparisonOperator operator, Object value,
+                           BooleanOperator booleanOperator, boolean negated) {
+        this.propertyName = propertyName;
+        this.operator = operator;
+        this.value = value;
+        this.booleanOperator = booleanOperator;
+        this.negated = negated;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the filter is nested, ignores case or is not a
+     *                                  comparison of a property with a value
+     */
+    public static PropertyFilter of(Filter filter) {
+        if (filter.isNested() || filter.isDeepNested())
+            throw new IllegalArgumentException("Only filters comparing a property with a value are supported: "
+                    + filter.getPropertyName());
+        return comparison(filter);
+    }
+
+    /**
+     * A copy of the filter, nested or not, that can be changed without changing the filter.
+     *
+     * @throws IllegalArgumentException when the filter ignores case or is not a comparison of a
+     *                                  property with a value
+     */
+    public static Filter copy(Filter filter) {
+        Filter copy = comparison(filter).toFilter(filter.getPropertyName());
+        copy.setOwnerEntityType(filter.getOwnerEntityType());
+        copy.setNestedPropertyName(filter.getNestedPropertyName());
+        copy.setNestedPropertyType(filter.getNestedPropertyType());
+        copy.setNestedEntityTypeLabel(filter.getNestedEntityTypeLabel());
+        copy.setNestedRelationshipEntity(filter.isNestedRelationshipEntity());
+        copy.setRelationshipType(filter.getRelationshipType());
+        copy.setRelationshipDirection(filter.getRelationshipDirection());
+        if (filter.isDeepNested()) {
+            List<Filter.NestedPathSegment> path = filter.getNestedPath();
+            Filter.NestedPathSegment[] segments = new Filter.NestedPathSegment[path.size()];
+            for (int i = 0; i < segments.length; i++) {
+                Filter.NestedPathSegment segment = path.get(i);
+                segments[i] = new Filter.NestedPathSegment(segment.getPropertyName(), segment.getPropertyType());
+                segments[i].setNestedEntityTypeLabel(segment.getNestedEntityTypeLabel());
+                segments[i].setNestedRelationshipEntity(segment.isNestedRelationshipEntity());
+                segments[i].setRelationshipType(segment.getRelationshipType());
+                segments[i].setRelationshipDirection(segment.getRelationshipDirection());
+            }
+            copy.setNestedPath(segments);
+        }
+        return copy;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static PropertyFilter comparison(Filter filter) {
+        if (filter.getFunction() == null || filter.getFunction().getClass() != PropertyComparison.class)
+            throw new IllegalArgumentException("Only filters comparing a property with a value are supported: "
+                    + filter.getPropertyName());
+        return new PropertyFilter(filter.getPropertyName(), filter.getComparisonOperator(),
+                filter.getFunction().getValue(), filter.getBooleanOperator(), filter.isNegated());
+    }
+
+    /**
+     * The name of the property, or of the field, compared.
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public ComparisonOperator getOperator() {
+        return operator;
+    }
+
+    /**
+     * The value as given to the filter.
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * The value as the operator compares it, a LIKE pattern becomes a regular expression.
+     */
+    public Object getTransformedValue() {
+        return operator.getPropertyValueTransformer().transformPropertyValue(value);
+    }
+
+    public BooleanOperator getBooleanOperator() {
+        return booleanOperator;
+    }
+
+    public boolean isNegated() {
+        return negated;
+    }
+
+    /**
+     * A new Filter comparing the property of that name in the same way.
+     */
+    public Filter toFilter(String propertyName) {
+        Filter filter = new Filter(propertyName, operator, value);
+        filter.setBooleanOperator(booleanOperator);
+        filter.setNegated(negated);
+        return filter;
+    }
+}
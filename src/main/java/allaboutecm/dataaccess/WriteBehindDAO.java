@@ -0,0 +1,322 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.ogm.cypher.Filters;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A DAO that holds back the saves of entities with a natural key and writes them to the
+ * delegate in batches with createOrUpdateAll. Saves of the same natural key made before the
+ * next flush are coalesced into one write of the latest entity.
+ *
+ * Pending saves are flushed every flushInterval and when maxPending natural keys are waiting
+ * on a background thread, by flush, and by close. Entities without a natural key, deletes
+ * and the other DAO methods are passed through after a flush, so they observe every earlier
+ * save. The find methods answer a pending save of the key they look up without flushing.
+ *
+ * Saved entities only get their id once they are flushed. If a flush fails, the saves not
+ * written are kept pending and retried with the next flush, unless a newer save of the same
+ * key replaced them.
+ *
+ * At most maxPending keys are held, counting those of a flush under way. A save of another
+ * key then waits for the pending saves to be flushed on its own thread, and throws what the
+ * flush threw when it fails. A save that throws was not accepted, one that returns will be
+ * written, so while the delegate is down saves are rejected instead of piling up.
+ */
+public class WriteBehindDAO implements DAO, AutoCloseable {
+    private static final Logger logger = LogManager.getLogger(WriteBehindDAO.class);
+
+    private final DAO delegate;
+    private final int maxPending;
+    private final ScheduledExecutorService flusher;
+
+    // pending saves by class and natural key values, in the order the keys were first saved
+    private final Object pendingLock = new Object();
+    private Map<Map.Entry<Class<?>, List<Object>>, Entity> pending = Maps.newLinkedHashMap();
+    // the saves taken by the flush under way
+    private Map<Map.Entry<Class<?>, List<Object>>, Entity> flushing = Collections.emptyMap();
+    private boolean closed;
+
+    // serialises flushes so that batches reach the delegate in order
+    private final Object flushLock = new Object();
+
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    public WriteBehindDAO(DAO delegate, int maxPending, long flushInterval, TimeUnit unit) {
+        Validate.notNull(delegate);
+        Validate.notNull(unit);
+        if (maxPending <= 0)
+            throw new IllegalArgumentException("maxPending must be positive");
+        if (flushInterval <= 0)
+            throw new IllegalArgumentException("flushInterval must be positive");
+
+        this.delegate = delegate;
+        this.maxPending = maxPending;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("write-behind-%d").setDaemon(true).build());
+        flusher.scheduleWithFixedDelay(this::flushInBackground, flushInterval, flushInterval, unit);
+    }
+
+    /**
+     * Number of saves accepted with a natural key.
+     */
+    public long getSaveCount() {
+        return saves.get();
+    }
+
+    /**
+     * Number of entities written to the delegate for those saves.
+     */
+    public long getWriteCount() {
+        return writes.get();
+    }
+
+    /**
+     * Number of saves not written yet, including those of a flush under way.
+     */
+    public int getPendingCount() {
+        synchronized (pendingLock) {
+            return pending.size() + flushing.size();
+        }
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        Validate.notNull(entity);
+        if (!enqueue(entity)) {
+            flush();
+            return delegate.createOrUpdate(entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Validate.notNull(entities);
+        Validate.noNullElements(entities);
+        List<T> direct = Lists.newArrayList();
+        for (T entity : entities) {
+            if (!enqueue(entity))
+                direct.add(entity);
+        }
+        if (!direct.isEmpty()) {
+            flush();
+            delegate.createOrUpdateAll(direct);
+        }
+        return entities;
+    }
+
+    /**
+     * Adds a save to the pending ones, flushing first when there is no room for it, returns
+     * false when the entity has no natural key.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean enqueue(Entity entity) {
+        NaturalKey<Entity> key = NaturalKey.of((Class<Entity>) entity.getClass());
+        if (key == null)
+            return false;
+
+        Map.Entry<Class<?>, List<Object>> naturalKey = Maps.immutableEntry(entity.getClass(), key.values(entity));
+        boolean full;
+        while (true) {
+            synchronized (pendingLock) {
+                if (closed)
+                    throw new IllegalStateException("The DAO is closed");
+                if (pending.containsKey(naturalKey) || pending.size() + flushing.size() < maxPending) {
+                    pending.put(naturalKey, entity);
+                    full = pending.size() + flushing.size() >= maxPending;
+                    break;
+                }
+            }
+            // the save is not accepted if this throws
+            flush();
+        }
+        saves.incrementAndGet();
+        if (full)
+            flushSoon();
+        return true;
+    }
+
+    private void flushSoon() {
+        try {
+            flusher.execute(this::flushInBackground);
+        } catch (RejectedExecutionException e) {
+            // closing, which flushes anyway
+        }
+    }
+
+    /**
+     * Writes every pending save to the delegate, on the calling thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            Map<Map.Entry<Class<?>, List<Object>>, Entity> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty())
+                    return;
+                batch = pending;
+                pending = Maps.newLinkedHashMap();
+                flushing = batch;
+            }
+            try {
+                delegate.createOrUpdateAll(Lists.newArrayList(batch.values()));
+                writes.addAndGet(batch.size());
+            } catch (RuntimeException e) {
+                synchronized (pendingLock) {
+                    // newer saves of the same keys win over the failed ones
+                    batch.putAll(pending);
+                    pending = batch;
+                    flushing = Collections.emptyMap();
+                }
+                throw e;
+            } finally {
+                synchronized (pendingLock) {
+                    flushing = Collections.emptyMap();
+                }
+            }
+        }
+    }
+
+    private void flushInBackground() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Failed to flush the pending saves", e);
+        }
+    }
+
+    /**
+     * Stops the background flushes, then flushes what is pending. Saves are rejected from then on.
+     */
+    @Override
+    public void close() {
+        synchronized (pendingLock) {
+            if (closed)
+                return;
+            closed = true;
+        }
+        flusher.shutdown();
+        try {
+            if (!flusher.awaitTermination(1, TimeUnit.MINUTES))
+                logger.warn("The background flush did not stop in time");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private <T extends Entity> T findPending(Class<T> clazz, Object... keyValues) {
+        Map.Entry<Class<?>, List<Object>> naturalKey = Maps.immutableEntry(clazz, Arrays.asList(keyValues));
+        synchronized (pendingLock) {
+            Entity entity = pending.get(naturalKey);
+            return clazz.cast(entity != null ? entity : flushing.get(naturalKey));
+        }
+    }
+
+    @Override
+    public Musician findMusicianByName(String name) {
+        Musician musician = findPending(Musician.class, name);
+        return musician != null ? musician : delegate.findMusicianByName(name);
+    }
+
+    @Override
+    public Album findAlbumByYearNumberName(Integer releaseYear, String recordNumber, String name) {
+        // natural key values are ordered by property name: albumName, recordNumber, releaseYear
+        Album album = findPending(Album.class, name, recordNumber, releaseYear);
+        return album != null ? album : delegate.findAlbumByYearNumberName(releaseYear, recordNumber, name);
+    }
+
+    @Override
+    public MusicalInstrument findMusicalInstrumentByName(String name) {
+        MusicalInstrument instrument = findPending(MusicalInstrument.class, name);
+        return instrument != null ? instrument : delegate.findMusicalInstrumentByName(name);
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        flush();
+        return delegate.load(clazz, id);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        flush();
+        return delegate.loadAll(clazz);
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        flush();
+        return delegate.loadAll(clazz, ids);
+    }
+
+    @Override
+    public <T extends Entity> IntProjection projectInt(Class<T> clazz, String field) {
+        flush();
+        return delegate.projectInt(clazz, field);
+    }
+
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz, int pageSize) {
+        flush();
+        return delegate.stream(clazz, pageSize);
+    }
+
+    @Override
+    public <T extends Entity> void prefetch(Class<T> clazz, Collection<T> entities, String... relationships) {
+        flush();
+        delegate.prefetch(clazz, entities, relationships);
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        flush();
+        delegate.delete(entity);
+    }
+
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Filters filters) {
+        flush();
+        return delegate.deleteWhere(clazz, filters);
+    }
+
+    @Override
+    public <T extends Entity> long deleteAll(Class<T> clazz) {
+        flush();
+        return delegate.deleteAll(clazz);
+    }
+
+    /**
+     * Listeners are notified by the delegate, when the saves are flushed.
+     */
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        delegate.addChangeListener(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        delegate.removeChangeListener(listener);
+    }
+}
@@ -0,0 +1,445 @@
+package allaboutecm.dataaccess.memory;
+
+import allaboutecm.dataaccess.ChangeListener;
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.IntProjection;
+import allaboutecm.dataaccess.NaturalKey;
+import allaboutecm.dataaccess.PropertyFilter;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.Validate;
+import org.neo4j.ogm.annotation.Property;
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.cypher.BooleanOperator;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.Filters;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * A DAO keeping the entities in memory, for tests and analytics runs that do not need a
+ * graph store. Entities are held by reference, by class and id, and those with a natural
+ * key are also indexed on it.
+ *
+ * Saves follow Neo4jDAO: an entity with a natural key takes the id of the entity saved with
+ * the same key, or a new one, and an entity without one a new id unless it has one already.
+ * The entities it is related to are saved with it, merged on their natural key, but not
+ * the entities related to those. A related entity that is stored already only takes the id
+ * of the stored one, which is kept with its own relationships. An entity saved again with
+ * changed key values keeps its id, unless another entity was saved with the new ones, and is
+ * no longer found by the previous ones.
+ *
+ * Writes are serialised, reads never wait and see every write completed before they
+ * started. Deleting an entity does not remove it from the relationships of the others.
+ */
+public class InMemoryDAO implements DAO {
+    private static final ConcurrentMap<Class<?>, List<Field>> RELATIONSHIPS = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, ConcurrentNavigableMap<Long, Entity>> entities = new ConcurrentHashMap<>();
+    // ids by class and natural key values
+    private final Map<Map.Entry<Class<?>, List<Object>>, Long> naturalKeys = new ConcurrentHashMap<>();
+    // natural key values by class and id, as they were saved, guarded by writeLock
+    private final Map<Map.Entry<Class<?>, Long>, List<Object>> savedKeys = Maps.newHashMap();
+    private final AtomicLong lastId = new AtomicLong();
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+
+    private ConcurrentNavigableMap<Long, Entity> entitiesOf(Class<?> clazz) {
+        return entities.computeIfAbsent(clazz, c -> new ConcurrentSkipListMap<>());
+    }
+
+    @Override
+    public <T extends Entity> T load(Class<T> clazz, Long id) {
+        Validate.notNull(clazz);
+        Validate.notNull(id);
+        return clazz.cast(entitiesOf(clazz).get(id));
+    }
+
+    @Override
+    public <T extends Entity> T createOrUpdate(T entity) {
+        Validate.notNull(entity);
+        List<Entity> created = Lists.newArrayList();
+        synchronized (writeLock) {
+            save(entity, false);
+            for (Field field : relationshipFields(entity.getClass())) {
+                Object related = read(field, entity);
+                if (related instanceof Collection) {
+                    for (Object element : (Collection<?>) related) {
+                        if (save((Entity) element, true))
+                            created.add((Entity) element);
+                    }
+                } else if (related != null && save((Entity) related, true)) {
+                    created.add((Entity) related);
+                }
+            }
+        }
+        for (ChangeListener listener : listeners) {
+            for (Entity related : created)
+                listener.onSave(related);
+            listener.onSave(entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Validate.notNull(entities);
+        Validate.noNullElements(entities);
+        for (T entity : entities)
+            createOrUpdate(entity);
+        return entities;
+    }
+
+    /**
+     * Whether the entity was stored, a related entity is not when one is stored already.
+     */
+    @SuppressWarnings("unchecked")
+    private boolean save(Entity entity, boolean related) {
+        ConcurrentNavigableMap<Long, Entity> byId = entitiesOf(entity.getClass());
+        NaturalKey<Entity> key = NaturalKey.of((Class<Entity>) entity.getClass());
+        Long id = entity.getId();
+        if (key != null) {
+            Class<?> clazz = entity.getClass();
+            List<Object> values = key.values(entity);
+            List<Object> previous = id == null ? null : savedKeys.get(Maps.immutableEntry(clazz, id));
+            if (previous != null && !previous.equals(values) && (!related || byId.get(id) == entity)) {
+                // the entity was saved before with other key values
+                naturalKeys.remove(Maps.immutableEntry(clazz, previous), id);
+                Long other = naturalKeys.putIfAbsent(Maps.immutableEntry(clazz, values), id);
+                if (other != null) {
+                    byId.remove(id);
+                    savedKeys.remove(Maps.immutableEntry(clazz, id));
+                    id = other;
+                }
+            } else {
+                id = naturalKeys.computeIfAbsent(Maps.immutableEntry(clazz, values), k -> lastId.incrementAndGet());
+            }
+            savedKeys.put(Maps.immutableEntry(clazz, id), values);
+        } else if (id == null) {
+            id = lastId.incrementAndGet();
+        }
+        entity.setId(id);
+        if (related)
+            return byId.putIfAbsent(id, entity) == null;
+        byId.put(id, entity);
+        return true;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
+        Validate.notNull(clazz);
+        List<T> all = Lists.newArrayList();
+        for (Entity entity : entitiesOf(clazz).values())
+            all.add(clazz.cast(entity));
+        return all;
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        Validate.notNull(clazz);
+        Validate.notNull(ids);
+        Map<Long, Entity> byId = entitiesOf(clazz);
+        List<T> loaded = Lists.newArrayListWithCapacity(ids.size());
+        for (Long id : ids) {
+            Entity entity = byId.get(id);
+            if (entity != null)
+                loaded.add(clazz.cast(entity));
+        }
+        return loaded;
+    }
+
+    @Override
+    public <T extends Entity> IntProjection projectInt(Class<T> clazz, String field) {
+        Validate.notNull(clazz);
+        Field declared = property(clazz, field);
+        if (declared.getType() != int.class && declared.getType() != Integer.class)
+            throw new IllegalArgumentException(clazz.getSimpleName() + "." + field + " is not an int field");
+
+        Collection<Entity> all = entitiesOf(clazz).values();
+        long[] ids = new long[64];
+        int[] values = new int[64];
+        int size = 0;
+        for (Entity entity : all) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            Object value = read(declared, entity);
+            ids[size] = entity.getId();
+            values[size] = value == null ? 0 : (Integer) value;
+            size++;
+        }
+        return new IntProjection(Arrays.copyOf(ids, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Streams the entities in id order. Nothing is fetched, so the page size only has to be
+     * valid.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz, int pageSize) {
+        Validate.notNull(clazz);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+        return entitiesOf(clazz).values().stream().map(clazz::cast);
+    }
+
+    /**
+     * Relationships are held by the entities themselves, so only the fields are checked.
+     */
+    @Override
+    public <T extends Entity> void prefetch(Class<T> clazz, Collection<T> entities, String... relationships) {
+        Validate.notNull(clazz);
+        Validate.notNull(entities);
+        Validate.noNullElements(relationships);
+        for (String relationship : relationships) {
+            Field field = field(clazz, relationship);
+            if (field == null)
+                throw new IllegalArgumentException(clazz.getSimpleName() + " has no field " + relationship);
+            if (!field.isAnnotationPresent(Relationship.class))
+                throw new IllegalArgumentException(clazz.getSimpleName() + "." + relationship + " is not a relationship");
+        }
+    }
+
+    @Override
+    public <T extends Entity> void delete(T entity) {
+        Validate.notNull(entity);
+        synchronized (writeLock) {
+            if (entity.getId() == null || !remove(entitiesOf(entity.getClass()).get(entity.getId())))
+                return;
+        }
+        for (ChangeListener listener : listeners)
+            listener.onDelete(entity);
+    }
+
+    private boolean remove(Entity stored) {
+        if (stored == null)
+            return false;
+        entitiesOf(stored.getClass()).remove(stored.getId());
+        // the key values it was saved with, it may have been changed since
+        List<Object> values = savedKeys.remove(Maps.immutableEntry(stored.getClass(), stored.getId()));
+        if (values != null)
+            naturalKeys.remove(Maps.immutableEntry(stored.getClass(), values), stored.getId());
+        return true;
+    }
+
+    /**
+     * The filters are evaluated on the fields of the entities, named by field or by
+     * property. Only property comparisons are supported, and AND is applied before OR as
+     * in Cypher.
+     *
+     * @throws IllegalArgumentException if a filter is nested, ignores case or is not a property comparison
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Filters filters) {
+        Validate.notNull(clazz);
+        Validate.notNull(filters);
+        List<PropertyFilter> conditions = Lists.newArrayList();
+        List<Field> fields = Lists.newArrayList();
+        for (Filter filter : filters) {
+            PropertyFilter condition = PropertyFilter.of(filter);
+            conditions.add(condition);
+            fields.add(property(clazz, condition.getPropertyName()));
+        }
+
+        long deleted = 0;
+        synchronized (writeLock) {
+            for (Entity entity : entitiesOf(clazz).values()) {
+                if (matches(entity, conditions, fields) && remove(entity))
+                    deleted++;
+            }
+        }
+        if (deleted > 0) {
+            for (ChangeListener listener : listeners)
+                listener.onDeleteAll(clazz);
+        }
+        return deleted;
+    }
+
+    @Override
+    public <T extends Entity> long deleteAll(Class<T> clazz) {
+        return deleteWhere(clazz, new Filters());
+    }
+
+    private static boolean matches(Entity entity, List<PropertyFilter> conditions, List<Field> fields) {
+        if (conditions.isEmpty())
+            return true;
+        // a disjunction of conjunctions, as AND binds tighter than OR
+        boolean any = false;
+        boolean all = true;
+        for (int i = 0; i < conditions.size(); i++) {
+            PropertyFilter filter = conditions.get(i);
+            if (i > 0 && filter.getBooleanOperator() == BooleanOperator.OR) {
+                any |= all;
+                all = true;
+            }
+            all = all && matches(read(fields.get(i), entity), filter);
+        }
+        return any || all;
+    }
+
+    private static boolean matches(Object value, PropertyFilter filter) {
+        ComparisonOperator operator = filter.getOperator();
+        if (operator == ComparisonOperator.IS_NULL)
+            return (value == null) != filter.isNegated();
+        if (operator == ComparisonOperator.EXISTS)
+            return (value != null) != filter.isNegated();
+        // as in Cypher, a comparison with a missing value is never true, negated or not
+        if (value == null)
+            return false;
+
+        Object expected = filter.getTransformedValue();
+        boolean result;
+        switch (operator) {
+            case EQUALS:
+                result = compare(value, expected) == 0;
+                break;
+            case GREATER_THAN:
+                result = compare(value, expected) > 0;
+                break;
+            case GREATER_THAN_EQUAL:
+                result = compare(value, expected) >= 0;
+                break;
+            case LESS_THAN:
+                result = compare(value, expected) < 0;
+                break;
+            case LESS_THAN_EQUAL:
+                result = compare(value, expected) <= 0;
+                break;
+            case IS_TRUE:
+                result = Boolean.TRUE.equals(value);
+                break;
+            case STARTING_WITH:
+                result = value.toString().startsWith(String.valueOf(expected));
+                break;
+            case ENDING_WITH:
+                result = value.toString().endsWith(String.valueOf(expected));
+                break;
+            case CONTAINING:
+                result = value.toString().contains(String.valueOf(expected));
+                break;
+            case MATCHES:
+            case LIKE:
+                // both are regular expressions once transformed
+                result = value.toString().matches(String.valueOf(expected));
+                break;
+            case IN:
+                result = expected instanceof Collection && ((Collection<?>) expected).stream().anyMatch(e -> compare(value, e) == 0);
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported operator " + operator);
+        }
+        return result != filter.isNegated();
+    }
+
+    /**
+     * Numbers compare by value, other values by their natural order when of the same class
+     * and by their text otherwise, so a URL compares to its string.
+     */
+    @SuppressWarnings("unchecked")
+    private static int compare(Object value, Object expected) {
+        if (expected == null)
+            return 1;
+        if (value instanceof Number && expected instanceof Number)
+            return Double.compare(((Number) value).doubleValue(), ((Number) expected).doubleValue());
+        if (value instanceof Comparable && value.getClass() == expected.getClass())
+            return ((Comparable<Object>) value).compareTo(expected);
+        return Objects.equals(value, expected) ? 0 : value.toString().compareTo(expected.toString());
+    }
+
+    @Override
+    public Musician findMusicianByName(String name) {
+        return find(Musician.class, name);
+    }
+
+    @Override
+    public Album findAlbumByYearNumberName(Integer releaseYear, String recordNumber, String name) {
+        // natural key values are ordered by property name: albumName, recordNumber, releaseYear
+        return find(Album.class, name, recordNumber, releaseYear);
+    }
+
+    @Override
+    public MusicalInstrument findMusicalInstrumentByName(String name) {
+        return find(MusicalInstrument.class, name);
+    }
+
+    private <T extends Entity> T find(Class<T> clazz, Object... keyValues) {
+        Long id = naturalKeys.get(Maps.immutableEntry(clazz, Arrays.asList(keyValues)));
+        return id == null ? null : clazz.cast(entitiesOf(clazz).get(id));
+    }
+
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener cannot be null");
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private static List<Field> relationshipFields(Class<?> clazz) {
+        return RELATIONSHIPS.computeIfAbsent(clazz, c -> {
+            List<Field> fields = Lists.newArrayList();
+            for (Class<?> declaring = c; declaring != null && declaring != Object.class; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    if (field.isAnnotationPresent(Relationship.class)) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields;
+        });
+    }
+
+    /**
+     * The property field of the class named by its field or property name.
+     */
+    private static Field property(Class<?> clazz, String name) {
+        Field field = field(clazz, name);
+        if (field == null || field.isAnnotationPresent(Relationship.class))
+            throw new IllegalArgumentException(clazz.getSimpleName() + " has no property " + name);
+        return field;
+    }
+
+    private static Field field(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                Property property = field.getAnnotation(Property.class);
+                if (field.getName().equals(name) || property != null && property.name().equals(name)) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Object read(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field, e);
+        }
+    }
+}
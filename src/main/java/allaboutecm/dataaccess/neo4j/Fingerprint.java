@@ -0,0 +1,150 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.model.Entity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.neo4j.ogm.annotation.Relationship;
+import org.neo4j.ogm.annotation.Transient;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A 64 bit hash of what saving an entity at depth 1 writes: its mapped properties, the ids
+ * of the entities it is related to, and the mapped properties of those entities.
+ *
+ * Collections of related entities are hashed regardless of their order, as the graph does
+ * not keep it, other collections in their iteration order.
+ */
+final class Fingerprint {
+    private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private Fingerprint() {
+    }
+
+    /**
+     * The fingerprint of the entity, or null when a related entity has no id yet, as saving
+     * the entity then creates a node.
+     */
+    static Long of(Entity entity) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        putProperties(hasher, entity);
+        for (Field field : fields(entity.getClass())) {
+            if (!field.isAnnotationPresent(Relationship.class))
+                continue;
+            Object value = read(field, entity);
+            hasher.putString(field.getName(), UTF_8);
+            if (value == null) {
+                hasher.putByte((byte) 0);
+            } else if (value instanceof Collection) {
+                long combined = 0;
+                for (Object related : (Collection<?>) value) {
+                    Long hash = related(related);
+                    if (hash == null)
+                        return null;
+                    combined += hash;
+                }
+                hasher.putInt(((Collection<?>) value).size()).putLong(combined);
+            } else {
+                Long hash = related(value);
+                if (hash == null)
+                    return null;
+                hasher.putLong(hash);
+            }
+        }
+        return hasher.hash().asLong();
+    }
+
+    /**
+     * The entities the entity is related to, which saving it at depth 1 writes with it.
+     */
+    static List<Entity> relatedEntities(Entity entity) {
+        List<Entity> related = Lists.newArrayList();
+        for (Field field : fields(entity.getClass())) {
+            if (!field.isAnnotationPresent(Relationship.class))
+                continue;
+            Object value = read(field, entity);
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    if (element != null)
+                        related.add((Entity) element);
+                }
+            } else if (value != null) {
+                related.add((Entity) value);
+            }
+        }
+        return related;
+    }
+
+    private static Long related(Object value) {
+        Entity entity = (Entity) value;
+        if (entity == null)
+            return 0L;
+        if (entity.getId() == null)
+            return null;
+        Hasher hasher = Hashing.murmur3_128().newHasher().putLong(entity.getId());
+        putProperties(hasher, entity);
+        return hasher.hash().asLong();
+    }
+
+    private static void putProperties(Hasher hasher, Entity entity) {
+        hasher.putString(entity.getClass().getName(), UTF_8);
+        for (Field field : fields(entity.getClass())) {
+            if (!field.isAnnotationPresent(Relationship.class)) {
+                hasher.putString(field.getName(), UTF_8);
+                putValue(hasher, read(field, entity));
+            }
+        }
+    }
+
+    private static void putValue(Hasher hasher, Object value) {
+        if (value == null) {
+            hasher.putByte((byte) 0);
+        } else if (value instanceof Collection) {
+            hasher.putByte((byte) 1).putInt(((Collection<?>) value).size());
+            for (Object element : (Collection<?>) value)
+                putValue(hasher, element);
+        } else {
+            // the type tells 1 from "1"
+            hasher.putByte((byte) 2)
+                    .putString(value.getClass().getName(), UTF_8)
+                    .putString(value.toString(), UTF_8);
+        }
+    }
+
+    /**
+     * The mapped fields of the class and its superclasses, but the id.
+     */
+    private static List<Field> fields(Class<?> clazz) {
+        return FIELDS.computeIfAbsent(clazz, c -> {
+            List<Field> fields = Lists.newArrayList();
+            for (Class<?> declaring = c; declaring != Entity.class && declaring != Object.class; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                            || field.isAnnotationPresent(Transient.class) || field.isSynthetic())
+                        continue;
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return ImmutableList.copyOf(fields);
+        });
+    }
+
+    private static Object read(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field, e);
+        }
+    }
+}
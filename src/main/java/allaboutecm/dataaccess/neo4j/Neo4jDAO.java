@@ -1,70 +1,856 @@
 package allaboutecm.dataaccess.neo4j;
 
+import allaboutecm.dataaccess.ChangeListener;
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.IntProjection;
+import allaboutecm.dataaccess.NaturalKey;
+import allaboutecm.dataaccess.PropertyFilter;
 import allaboutecm.model.Album;
 import allaboutecm.model.Entity;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.annotation.Property;
+import org.neo4j.ogm.annotation.Relationship;
 import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.session.Neo4jSession;
 import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+import org.neo4j.ogm.session.request.FilteredQuery;
+import org.neo4j.ogm.session.request.FilteredQueryBuilder;
 import org.neo4j.ogm.transaction.Transaction;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.neo4j.ogm.cypher.ComparisonOperator.EQUALS;
 
+/**
+ * Created over a single Session, the DAO runs every operation on it and must be used by one
+ * thread at a time. Created over a SessionFactory, every operation takes a session of its own
+ * from a bounded pool, whose mapping context is cleared after the operation, and the DAO can
+ * be shared between threads. Entities returned by a pooled DAO are then detached.
+ */
 public class Neo4jDAO implements DAO {
+    private static final Logger logger = LogManager.getLogger(Neo4jDAO.class);
+
     private static final int DEPTH_LIST = 0;
     private static final int DEPTH_ENTITY = 1;
 
-    private Session session;
+    /**
+     * Number of entities createOrUpdateAll saves, and deleteWhere deletes, per transaction
+     * unless configured otherwise.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The fields the lookups of an existing entity filter on, by class, in the order their
+     * values are given. Filters take field names, not property names, SchemaManager checks
+     * that OGM maps every one of them.
+     */
+    static final Map<Class<? extends Entity>, List<String>> LOOKUP_FIELDS = ImmutableMap.of(
+            Album.class, ImmutableList.of("albumName", "recordNumber", "releaseYear"),
+            Musician.class, ImmutableList.of("name"),
+            MusicalInstrument.class, ImmutableList.of("name"),
+            MusicianInstrument.class, ImmutableList.of("musician", "musicalInstruments"));
+
+    private final SessionPool sessions;
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    // the streams open on a shared session, which let go of what their page and its prefetch loaded
+    private final List<Pages<?>> openPages = new CopyOnWriteArrayList<>();
+    private volatile int batchSize = DEFAULT_BATCH_SIZE;
+    // natural key lookups by class and key values, absent entities are cached as empty
+    private volatile Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> lookupCache;
+    // counted at the start and the end of every write, a find only caches what it read when
+    // no write started or ended while it was reading
+    private final AtomicLong writes = new AtomicLong();
+    // id and fingerprint of the last save, by class and natural key values or id
+    private volatile Map<Map.Entry<Class<?>, List<Object>>, long[]> fingerprints;
+    private final AtomicLong skippedSaves = new AtomicLong();
 
     public Neo4jDAO(Session session) {
-        this.session = session;
+        this.sessions = SessionPool.of(session);
+    }
+
+    /**
+     * A DAO running each operation on one of poolSize sessions opened from the factory.
+     */
+    public Neo4jDAO(SessionFactory sessionFactory, int poolSize) {
+        this.sessions = SessionPool.of(sessionFactory, poolSize);
+    }
+
+    /**
+     * Runs one unit of work on a session of the pool.
+     */
+    private <R> R withSession(Function<Session, R> work) {
+        Session session = sessions.acquire();
+        try {
+            return work.apply(session);
+        } finally {
+            sessions.release(session);
+        }
+    }
+
+    /**
+     * Runs a unit of work writing to the store, which the finds running meanwhile do not cache.
+     */
+    private <R> R write(Function<Session, R> work) {
+        writes.incrementAndGet();
+        try {
+            return withSession(work);
+        } finally {
+            writes.incrementAndGet();
+        }
     }
 
     @Override
     public <T extends Entity> T load(Class<T> clazz, Long id) {
-        return session.load(clazz, id, DEPTH_ENTITY);
+        return withSession(session -> session.load(clazz, id, DEPTH_ENTITY));
     }
 
+    /**
+     * Entities with a natural key are merged on it inside the write transaction, so finding
+     * or creating the node and saving the entity happen atomically, and the id of the node
+     * is written back to the entity. An entity that has the id of a node keeps it, so
+     * changing its key values renames the node rather than creating another one.
+     */
     @Override
+    @SuppressWarnings("unchecked")
     public <T extends Entity> T createOrUpdate(T entity) {
         Class clazz = entity.getClass();
+        NaturalKey<Entity> key = NaturalKey.of(clazz);
+        if (unchanged(key, entity))
+            return entity;
 
-        T existingEntity = findExistingEntity(entity, clazz);
-        if (null != existingEntity) {
-            entity.setId(existingEntity.getId());
-        }
-        Transaction tx = session.beginTransaction();
-        session.save(entity, DEPTH_ENTITY);
-        tx.commit();
+        List<Entity> created = write(session -> {
+            if (key == null) {
+                T existingEntity = findExistingEntity(session, entity, clazz);
+                if (null != existingEntity) {
+                    entity.setId(existingEntity.getId());
+                }
+            }
+            try (Transaction tx = session.beginTransaction()) {
+                if (key != null)
+                    mergeIds(session, key, Collections.singletonList(entity));
+                loadStored(session, clazz, Collections.singletonList(entity));
+                List<Entity> unsaved = unsavedRelated(Collections.singletonList(entity));
+                session.save(entity, DEPTH_ENTITY);
+                tx.commit();
+                return unsaved;
+            }
+        });
+        fingerprintSaved(key, entity);
+        cacheSaved(key, entity);
+        notifySaved(created, Collections.singletonList(entity));
         return entity;
 
     }
 
+    /**
+     * Caches the results of the find methods by natural key, including the keys nothing was
+     * found for, up to maximumSize entries, each for at most ttl after it was cached. Saves
+     * through this DAO update the entries of the saved entities and invalidate those of the
+     * entities saved or created with them, deletes invalidate the entries of the deleted entity
+     * and of those related to it. A find overlapping a write through this DAO is not cached.
+     * Writes made to the store by anyone else are seen once the entries expire.
+     */
+    public void enableLookupCache(long maximumSize, long ttl, TimeUnit unit) {
+        Validate.notNull(unit);
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive");
+        if (ttl <= 0)
+            throw new IllegalArgumentException("ttl must be positive");
+        lookupCache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl, unit)
+                .recordStats()
+                .build();
+    }
+
+    public void disableLookupCache() {
+        lookupCache = null;
+    }
+
+    /**
+     * The hit, miss and eviction counts of the lookup cache, all zero when it is disabled.
+     */
+    public CacheStats getLookupCacheStats() {
+        Cache<?, ?> cache = lookupCache;
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    /**
+     * Answers a find from the lookup cache, or from the store when the cache is disabled or
+     * misses. A cached entity whose key values were changed since is looked up again.
+     */
+    private <T extends Entity> T lookup(Class<T> clazz, Map<String, Object> naturalKey, Supplier<T> finder) {
+        Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> cache = lookupCache;
+        if (cache == null || naturalKey.containsValue(null))
+            return finder.get();
+
+        Map.Entry<Class<?>, Map<String, Object>> cacheKey = Maps.immutableEntry(clazz, naturalKey);
+        Optional<Entity> cached = cache.getIfPresent(cacheKey);
+        if (cached != null) {
+            if (!cached.isPresent())
+                return null;
+            T entity = clazz.cast(cached.get());
+            if (NaturalKey.of(clazz).toMap(entity).equals(naturalKey))
+                return entity;
+        }
+        long before = writes.get();
+        T found = finder.get();
+        // what a write changed while it was read may have been missed
+        if (before % 2 == 0 && writes.get() == before)
+            cache.put(cacheKey, Optional.ofNullable(found));
+        return found;
+    }
+
+    /**
+     * Caches the saved entity under its key, and invalidates the entries of the entities
+     * written with it, which may have been created or changed by the save.
+     */
+    private void cacheSaved(NaturalKey<Entity> key, Entity entity) {
+        Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> cache = lookupCache;
+        if (cache == null)
+            return;
+        if (key != null) {
+            Map<String, Object> naturalKey = key.toMap(entity);
+            if (!naturalKey.containsValue(null))
+                cache.put(Maps.immutableEntry(entity.getClass(), naturalKey), Optional.of(entity));
+        }
+        invalidateRelated(cache, entity);
+    }
+
+    /**
+     * Invalidates the entry of the entity and those of the entities it is related to.
+     */
+    private static void invalidate(Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> cache, Entity entity) {
+        @SuppressWarnings("unchecked")
+        NaturalKey<Entity> key = NaturalKey.of((Class<Entity>) entity.getClass());
+        if (key != null)
+            cache.invalidate(Maps.immutableEntry(entity.getClass(), key.toMap(entity)));
+        invalidateRelated(cache, entity);
+    }
+
+    private static void invalidateRelated(Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> cache, Entity entity) {
+        for (Entity related : Fingerprint.relatedEntities(entity)) {
+            @SuppressWarnings("unchecked")
+            NaturalKey<Entity> key = NaturalKey.of((Class<Entity>) related.getClass());
+            if (key != null)
+                cache.invalidate(Maps.immutableEntry(related.getClass(), key.toMap(related)));
+        }
+    }
+
+    /**
+     * Skips the saves of entities whose fingerprint, a hash of their properties and those of
+     * the entities they are related to, is the one of their last save through this DAO. The
+     * skipped entity gets the id of that save and listeners are not notified. Entities are
+     * told apart by their natural key, or by their id when their class has none. Deletes
+     * forget every fingerprint, writes made to the store by anyone else are not seen.
+     */
+    public void enableDirtyChecking() {
+        if (fingerprints == null)
+            fingerprints = new ConcurrentHashMap<>();
+    }
+
+    public void disableDirtyChecking() {
+        fingerprints = null;
+    }
+
+    /**
+     * Number of saves skipped because the entity was unchanged.
+     */
+    public long getSkippedSaveCount() {
+        return skippedSaves.get();
+    }
+
+    private static Map.Entry<Class<?>, List<Object>> fingerprintKey(NaturalKey<Entity> key, Entity entity) {
+        if (key != null)
+            return Maps.immutableEntry(entity.getClass(), key.values(entity));
+        if (entity.getId() != null)
+            return Maps.immutableEntry(entity.getClass(), Collections.singletonList(entity.getId()));
+        return null;
+    }
+
+    /**
+     * Whether the entity is as it was last saved, in which case it gets the id of the save.
+     */
+    private boolean unchanged(NaturalKey<Entity> key, Entity entity) {
+        Map<Map.Entry<Class<?>, List<Object>>, long[]> saved = fingerprints;
+        Map.Entry<Class<?>, List<Object>> fingerprintKey = saved == null ? null : fingerprintKey(key, entity);
+        if (fingerprintKey == null)
+            return false;
+        long[] last = saved.get(fingerprintKey);
+        Long fingerprint = last == null ? null : Fingerprint.of(entity);
+        if (fingerprint == null || fingerprint != last[1])
+            return false;
+        entity.setId(last[0]);
+        skippedSaves.incrementAndGet();
+        return true;
+    }
+
+    private void fingerprintSaved(NaturalKey<Entity> key, Entity entity) {
+        Map<Map.Entry<Class<?>, List<Object>>, long[]> saved = fingerprints;
+        if (saved == null || entity.getId() == null)
+            return;
+        Map.Entry<Class<?>, List<Object>> fingerprintKey = fingerprintKey(key, entity);
+        Long fingerprint = Fingerprint.of(entity);
+        if (fingerprint != null)
+            saved.put(fingerprintKey, new long[]{entity.getId(), fingerprint});
+        else
+            saved.remove(fingerprintKey);
+    }
+
+    private void forgetFingerprints() {
+        Map<?, ?> saved = fingerprints;
+        if (saved != null)
+            saved.clear();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Saves the entities in chunks of batchSize, each chunk in one transaction. The nodes of
+     * a chunk are merged with one query on the natural keys of its entities. The time taken
+     * by the merge and the save of every chunk is logged.
+     */
+    @Override
+    public <T extends Entity> Collection<T> createOrUpdateAll(Collection<T> entities) {
+        Validate.notNull(entities);
+        Validate.noNullElements(entities);
+
+        // grouped by class, classes in the order they first appear
+        Map<Class<?>, List<Entity>> byClass = Maps.newLinkedHashMap();
+        for (T entity : entities)
+            byClass.computeIfAbsent(entity.getClass(), c -> Lists.newArrayList()).add(entity);
+        for (Map.Entry<Class<?>, List<Entity>> group : byClass.entrySet())
+            saveAll(group.getKey(), group.getValue());
+        return entities;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void saveAll(Class<?> clazz, List<Entity> entities) {
+        NaturalKey<Entity> key = NaturalKey.of((Class<Entity>) clazz);
+
+        // an entity listed more than once is saved once, with the values of its last occurrence
+        List<Entity> unique = entities;
+        Map<List<Object>, Entity> last = Maps.newLinkedHashMap();
+        if (key != null) {
+            for (Entity entity : entities)
+                last.put(key.values(entity), entity);
+            unique = Lists.newArrayList(last.values());
+        }
+        List<Entity> changed = Lists.newArrayListWithCapacity(unique.size());
+        for (Entity entity : unique) {
+            if (!unchanged(key, entity))
+                changed.add(entity);
+        }
+        if (changed.size() < unique.size())
+            logger.info("Skipped {} unchanged {} entities", unique.size() - changed.size(), clazz.getSimpleName());
+
+        for (List<Entity> chunk : Lists.partition(changed, batchSize)) {
+            long start = System.nanoTime();
+            long[] resolved = new long[1];
+            List<List<Entity>> created = Lists.newArrayListWithCapacity(1);
+            long saved = write(session -> {
+                if (key == null) {
+                    for (Entity entity : chunk) {
+                        Entity existingEntity = findExistingEntity(session, entity, clazz);
+                        if (null != existingEntity)
+                            entity.setId(existingEntity.getId());
+                    }
+                }
+                try (Transaction tx = session.beginTransaction()) {
+                    if (key != null)
+                        mergeIds(session, key, chunk);
+                    loadStored(session, clazz, chunk);
+                    resolved[0] = System.nanoTime();
+                    created.add(unsavedRelated(chunk));
+                    session.save(chunk, DEPTH_ENTITY);
+                    tx.commit();
+                    return System.nanoTime();
+                }
+            });
+            logger.info("Saved {} {} entities: key merge {} ms, save {} ms", chunk.size(), clazz.getSimpleName(),
+                    TimeUnit.NANOSECONDS.toMillis(resolved[0] - start), TimeUnit.NANOSECONDS.toMillis(saved - resolved[0]));
+            for (Entity entity : chunk) {
+                fingerprintSaved(key, entity);
+                cacheSaved(key, entity);
+            }
+            notifySaved(created.get(0), chunk);
+        }
+
+        if (unique != entities) {
+            for (Entity entity : entities)
+                entity.setId(last.get(key.values(entity)).getId());
+        }
+    }
+
+    /**
+     * Loads the stored relationships of the entities about to be saved into a pooled session,
+     * which was cleared since they were loaded, so that the save deletes the relationships the
+     * entities no longer have. A shared session still holds them.
+     */
+    private void loadStored(Session session, Class<?> clazz, List<? extends Entity> entities) {
+        if (sessions.isShared())
+            return;
+        List<Long> ids = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (entity.getId() != null)
+                ids.add(entity.getId());
+        }
+        if (!ids.isEmpty())
+            session.loadAll(clazz, ids, DEPTH_ENTITY);
+    }
+
+    /**
+     * The entities related to the saved ones that have no id, which the save creates.
+     */
+    private static List<Entity> unsavedRelated(List<? extends Entity> saved) {
+        Set<Entity> seen = Sets.newIdentityHashSet();
+        seen.addAll(saved);
+        List<Entity> unsaved = Lists.newArrayList();
+        for (Entity entity : saved) {
+            for (Entity related : Fingerprint.relatedEntities(entity)) {
+                if (related.getId() == null && seen.add(related))
+                    unsaved.add(related);
+            }
+        }
+        return unsaved;
+    }
+
+    /**
+     * Notifies the listeners of the related entities a save created, then of the saved ones.
+     */
+    private void notifySaved(List<Entity> created, List<? extends Entity> saved) {
+        for (ChangeListener listener : listeners) {
+            for (Entity entity : created)
+                listener.onSave(entity);
+            for (Entity entity : saved)
+                listener.onSave(entity);
+        }
+    }
+
+    /**
+     * Merges a node on its natural key for every entity without a node, in one statement for
+     * all of them, and sets the ids of the nodes on the entities. An entity with the id of a
+     * node keeps it, so saving it with changed key values updates its node.
+     */
+    private void mergeIds(Session session, NaturalKey<Entity> key, List<? extends Entity> entities) {
+        List<Long> ids = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (entity.getId() != null)
+                ids.add(entity.getId());
+        }
+        Set<Long> stored = Sets.newHashSet();
+        if (!ids.isEmpty()) {
+            String cypher = "MATCH (n:" + key.getLabel() + ") WHERE id(n) IN $ids RETURN id(n) AS id";
+            for (Map<String, Object> result : session.query(cypher, ImmutableMap.of("ids", ids)).queryResults())
+                stored.add(((Number) result.get("id")).longValue());
+        }
+        List<Entity> unstored = Lists.newArrayList();
+        for (Entity entity : entities) {
+            if (entity.getId() == null || !stored.contains(entity.getId())) {
+                // the node of a deleted entity is merged again
+                entity.setId(null);
+                unstored.add(entity);
+            }
+        }
+        if (unstored.isEmpty())
+            return;
+
+        List<Map<String, Object>> keys = Lists.newArrayListWithCapacity(unstored.size());
+        for (int row = 0; row < unstored.size(); row++) {
+            Map<String, Object> values = key.toMap(unstored.get(row));
+            // no natural key property is called row
+            values.put("row", row);
+            keys.add(values);
+        }
+
+        StringBuilder cypher = new StringBuilder("UNWIND $keys AS key MERGE (n:").append(key.getLabel()).append(" {");
+        for (int i = 0; i < key.getProperties().size(); i++) {
+            String property = key.getProperties().get(i);
+            if (i > 0)
+                cypher.append(", ");
+            cypher.append(property).append(": key.").append(property);
+        }
+        cypher.append("}) RETURN key.row AS row, id(n) AS id");
+
+        for (Map<String, Object> result : session.query(cypher.toString(), ImmutableMap.of("keys", keys)).queryResults()) {
+            int row = ((Number) result.get("row")).intValue();
+            unstored.get(row).setId(((Number) result.get("id")).longValue());
+        }
+    }
+
     @Override
     public <T extends Entity> Collection<T> loadAll(Class<T> clazz) {
-        return session.loadAll(clazz, DEPTH_LIST);
+        return withSession(session -> session.loadAll(clazz, DEPTH_LIST));
+
+
+    }
+
+    @Override
+    public <T extends Entity> Collection<T> loadAll(Class<T> clazz, Collection<Long> ids) {
+        Validate.notNull(clazz);
+        Validate.notNull(ids);
+        if (ids.isEmpty())
+            return Lists.newArrayList();
+        return withSession(session -> session.loadAll(clazz, ids, DEPTH_LIST));
+    }
+
+    @Override
+    public <T extends Entity> IntProjection projectInt(Class<T> clazz, String field) {
+        Validate.notNull(clazz);
+        String cypher = "MATCH (n:" + clazz.getSimpleName() + ") RETURN id(n) AS id, coalesce(n."
+                + intProperty(clazz, field) + ", 0) AS value";
+
+        Iterable<Map<String, Object>> rows = withSession(session -> session.query(cypher, Collections.emptyMap()).queryResults());
+        long[] ids = new long[64];
+        int[] values = new int[64];
+        int size = 0;
+        for (Map<String, Object> row : rows) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ids[size] = ((Number) row.get("id")).longValue();
+            values[size] = ((Number) row.get("value")).intValue();
+            size++;
+        }
+        return new IntProjection(Arrays.copyOf(ids, size), Arrays.copyOf(values, size));
+    }
+
+    /**
+     * The graph property an int field of the class is stored as.
+     */
+    private static String intProperty(Class<?> clazz, String field) {
+        Field declared = findField(clazz, field);
+        if (declared == null)
+            throw new IllegalArgumentException(clazz.getSimpleName() + " has no field " + field);
+        if (declared.getType() != int.class && declared.getType() != Integer.class)
+            throw new IllegalArgumentException(clazz.getSimpleName() + "." + field + " is not an int field");
+        return propertyName(declared);
+    }
 
+    private static String propertyName(Field field) {
+        Property property = field.getAnnotation(Property.class);
+        return property != null && !property.name().isEmpty() ? property.name() : field.getName();
+    }
 
+    /**
+     * The field of the class or of a superclass with the name, or null.
+     */
+    private static Field findField(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException e) {
+                // look in the superclass
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Each relationship is one query matching the paths from all the entities, mapped by OGM
+     * into the session. The relationship fields of the session's entities are copied to the
+     * given ones when they are not the same objects, as with a pooled session. On a shared
+     * session, the entities a prefetch for the page of a stream loads are detached with the page.
+     */
+    @Override
+    public <T extends Entity> void prefetch(Class<T> clazz, Collection<T> entities, String... relationships) {
+        Validate.notNull(clazz);
+        Validate.notNull(entities);
+        Validate.noNullElements(relationships);
+
+        List<Field> fields = Lists.newArrayListWithCapacity(relationships.length);
+        for (String relationship : relationships)
+            fields.add(relationshipField(clazz, relationship));
+        Map<Long, T> byId = Maps.newHashMap();
+        for (T entity : entities) {
+            if (entity.getId() != null)
+                byId.put(entity.getId(), entity);
+        }
+        if (byId.isEmpty())
+            return;
+
+        Map<String, Object> parameters = ImmutableMap.of("ids", Lists.newArrayList(byId.keySet()));
+        Pages<?> owner = pagesOf(byId.keySet());
+        for (Field field : fields) {
+            String match = "MATCH p=(n:" + clazz.getSimpleName() + ")" + pattern(field.getAnnotation(Relationship.class))
+                    + "(m) WHERE id(n) IN $ids ";
+            String cypher = match + "RETURN p";
+            withSession(session -> {
+                if (owner != null)
+                    owner.track(session, session.query(match + "RETURN DISTINCT id(m) AS id", parameters).queryResults());
+                for (T loaded : session.query(clazz, cypher, parameters)) {
+                    T entity = byId.get(loaded.getId());
+                    if (entity != null && entity != loaded)
+                        copyField(field, loaded, entity);
+                }
+                return null;
+            });
+        }
+    }
+
+    /**
+     * The filter on entities of the class, or a copy naming the property the compared field is
+     * stored under and, when nested, the types, directions and labels of the relationships it
+     * follows, as a session resolves them for loadAll.
+     */
+    private static Filter resolve(Class<?> clazz, Filter filter) {
+        if (filter.isDeepNested()) {
+            Filter copy = PropertyFilter.copy(filter);
+            Class<?> owner = clazz;
+            for (Filter.NestedPathSegment segment : copy.getNestedPath()) {
+                Field field = relationshipField(owner, segment.getPropertyName());
+                owner = relatedType(field, segment.getPropertyType());
+                Relationship relationship = field.getAnnotation(Relationship.class);
+                segment.setRelationshipType(relationship.type());
+                segment.setRelationshipDirection(relationship.direction());
+                segment.setNestedEntityTypeLabel(owner.getSimpleName());
+            }
+            copy.setPropertyName(storedName(owner, filter.getPropertyName()));
+            return copy;
+        }
+        if (filter.isNested()) {
+            Field field = relationshipField(clazz, filter.getNestedPropertyName());
+            Class<?> related = relatedType(field, filter.getNestedPropertyType());
+            Relationship relationship = field.getAnnotation(Relationship.class);
+            Filter copy = PropertyFilter.copy(filter);
+            copy.setPropertyName(storedName(related, filter.getPropertyName()));
+            copy.setNestedPropertyType(related);
+            copy.setRelationshipType(relationship.type());
+            copy.setRelationshipDirection(relationship.direction());
+            copy.setNestedEntityTypeLabel(related.getSimpleName());
+            return copy;
+        }
+        Field field = findField(clazz, filter.getPropertyName());
+        if (field == null || propertyName(field).equals(field.getName()))
+            return filter;
+        return PropertyFilter.of(filter).toFilter(propertyName(field));
+    }
+
+    /**
+     * The property the field of that name is stored under, or the name when there is no such field.
+     */
+    private static String storedName(Class<?> clazz, String name) {
+        Field field = findField(clazz, name);
+        return field == null ? name : propertyName(field);
+    }
+
+    /**
+     * The type of the entities a relationship field holds, the given type when there is one.
+     */
+    private static Class<?> relatedType(Field field, Class<?> given) {
+        if (given != null)
+            return given;
+        if (Collection.class.isAssignableFrom(field.getType()) && field.getGenericType() instanceof ParameterizedType) {
+            Type element = ((ParameterizedType) field.getGenericType()).getActualTypeArguments()[0];
+            if (element instanceof Class)
+                return (Class<?>) element;
+        }
+        return field.getType();
+    }
+
+    private static Field relationshipField(Class<?> clazz, String name) {
+        Field field = findField(clazz, name);
+        if (field == null)
+            throw new IllegalArgumentException(clazz.getSimpleName() + " has no field " + name);
+        if (!field.isAnnotationPresent(Relationship.class))
+            throw new IllegalArgumentException(clazz.getSimpleName() + "." + name + " is not a relationship");
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static String pattern(Relationship relationship) {
+        String type = "[:`" + relationship.type() + "`]";
+        if (Relationship.INCOMING.equals(relationship.direction()))
+            return "<-" + type + "-";
+        if (Relationship.UNDIRECTED.equals(relationship.direction()))
+            return "-" + type + "-";
+        return "-" + type + "->";
+    }
+
+    private static void copyField(Field field, Object from, Object to) {
+        try {
+            field.set(to, field.get(from));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot copy " + field, e);
+        }
+    }
+
+    /**
+     * Runs a read-only Cypher query on a session of the pool, the entities it returns are
+     * mapped to the class.
+     */
+    public <T> List<T> query(Class<T> clazz, String cypher, Map<String, Object> parameters) {
+        Validate.notNull(clazz);
+        Validate.notNull(cypher);
+        return withSession(session -> Lists.newArrayList(session.query(clazz, cypher, parameters)));
+    }
+
+    /**
+     * Runs a read-only Cypher query on a session of the pool and returns its rows.
+     */
+    public List<Map<String, Object>> queryRows(String cypher, Map<String, Object> parameters) {
+        Validate.notNull(cypher);
+        return withSession(session -> Lists.newArrayList(session.query(cypher, parameters).queryResults()));
+    }
+
+    /**
+     * Pages are fetched in id order, each one continuing after the last id of the previous
+     * page, so no page skips over the ones before it. On a shared session, the entities a page
+     * loaded, and those prefetched for it, are detached from the session when the next page is
+     * fetched or the stream is closed. Entities the session held before are left in it.
+     */
+    @Override
+    public <T extends Entity> Stream<T> stream(Class<T> clazz, int pageSize) {
+        Validate.notNull(clazz);
+        if (pageSize <= 0)
+            throw new IllegalArgumentException("pageSize must be positive");
+
+        Pages<T> pages = new Pages<>(clazz, pageSize);
+        if (sessions.isShared())
+            openPages.add(pages);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .onClose(pages::release);
+    }
+
+    /**
+     * The open stream whose page, or what was prefetched for it, has one of the ids, or null.
+     */
+    private Pages<?> pagesOf(Collection<Long> ids) {
+        for (Pages<?> pages : openPages) {
+            for (Long id : ids) {
+                if (pages.holds(id))
+                    return pages;
+            }
+        }
+        return null;
     }
 
     @Override
     public <T extends Entity> void delete(T entity) {
 
 
-        session.delete(entity);
+        write(session -> {
+            session.delete(entity);
+            return entity;
+        });
+        Cache<Map.Entry<Class<?>, Map<String, Object>>, Optional<Entity>> cache = lookupCache;
+        if (cache != null)
+            invalidate(cache, entity);
+        // entities related to the deleted one no longer are
+        forgetFingerprints();
+        for (ChangeListener listener : listeners)
+            listener.onDelete(entity);
+    }
+
+    /**
+     * Deletes batchSize matching nodes per transaction, with their relationships, until no
+     * more match. The filters name fields, as for Session.loadAll, nested ones name the
+     * relationship fields they follow and a field of the entities at their end. Filters on a
+     * field stored under another property name, and nested filters, are replaced by copies
+     * naming the property and the relationships, the given filters are left unchanged. The
+     * deleted nodes are detached from the session and the lookup cache is emptied.
+     */
+    @Override
+    public <T extends Entity> long deleteWhere(Class<T> clazz, Filters filters) {
+        Validate.notNull(clazz);
+        Validate.notNull(filters);
+        Filters rewritten = new Filters();
+        for (Filter filter : filters)
+            rewritten.add(resolve(clazz, filter));
+
+        FilteredQuery query = FilteredQueryBuilder.buildNodeQuery(clazz.getSimpleName(), rewritten);
+        String cypher = query.statement() + " LIMIT $chunkSize WITH n, id(n) AS id DETACH DELETE n RETURN id";
+        Map<String, Object> parameters = Maps.newHashMap(query.parameters());
+        int chunkSize = batchSize;
+        parameters.put("chunkSize", chunkSize);
+
+        long total = 0;
+        int deleted;
+        do {
+            deleted = write(session -> {
+                List<Long> ids = Lists.newArrayList();
+                try (Transaction tx = session.beginTransaction()) {
+                    for (Map<String, Object> row : session.query(cypher, parameters).queryResults())
+                        ids.add(((Number) row.get("id")).longValue());
+                    tx.commit();
+                }
+                for (Long id : ids)
+                    session.detachNodeEntity(id);
+                return ids.size();
+            });
+            total += deleted;
+        } while (deleted == chunkSize);
+
+        if (total > 0) {
+            logger.info("Deleted {} {} entities", total, clazz.getSimpleName());
+            Cache<?, ?> cache = lookupCache;
+            if (cache != null)
+                cache.invalidateAll();
+            forgetFingerprints();
+            for (ChangeListener listener : listeners)
+                listener.onDeleteAll(clazz);
+        }
+        return total;
+    }
+
+    @Override
+    public <T extends Entity> long deleteAll(Class<T> clazz) {
+        return deleteWhere(clazz, new Filters());
     }
 
     @Override
     public Musician findMusicianByName(String name) {
-        Filters filters = new Filters();
-        filters.add(new Filter("name", EQUALS, name));
-        Collection<Musician> musicians = session.loadAll(Musician.class, filters);
+        return lookup(Musician.class, Collections.singletonMap("name", name), () -> withSession(session -> loadMusicianByName(session, name)));
+    }
+
+    private Musician loadMusicianByName(Session session, String name) {
+        Collection<Musician> musicians = session.loadAll(Musician.class, lookupFilters(Musician.class, name));
         if (musicians.isEmpty()) {
             return null;
         } else {
@@ -72,32 +858,39 @@ public class Neo4jDAO implements DAO {
         }
     }
 
-    private <T extends Entity> T findExistingEntity(Entity entity, Class clazz) {
-        Filters filters = new Filters();
+    @Override
+    public void addChangeListener(ChangeListener listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("listener cannot be null");
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeChangeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private <T extends Entity> T findExistingEntity(Session session, Entity entity, Class clazz) {
         Collection<? extends Entity> collection = Sets.newLinkedHashSet();
         if (clazz.equals(Album.class)) {
             // Album
             Album album = (Album) entity;
-            filters.add(new Filter("albumName", EQUALS, album.getAlbumName())
-                    .and(new Filter("recordNumber", EQUALS, album.getRecordNumber()))
-                    .and(new Filter("releaseYear", EQUALS, album.getReleaseYear())));
-            collection = session.loadAll(Album.class, filters);
+            collection = session.loadAll(Album.class, lookupFilters(Album.class,
+                    album.getAlbumName(), album.getRecordNumber(), album.getReleaseYear()));
         } else if (clazz.equals(Musician.class)) {
             // Musician
             Musician musician = (Musician) entity;
-            filters.add(new Filter("name", EQUALS, musician.getName()));
-            collection = session.loadAll(Musician.class, filters);
+            collection = session.loadAll(Musician.class, lookupFilters(Musician.class, musician.getName()));
         } else if (clazz.equals(MusicalInstrument.class)) {
             // MusicalInstrument
             MusicalInstrument musicalInstrument = (MusicalInstrument) entity;
-            filters.add(new Filter("name", EQUALS, musicalInstrument.getName()));
-            collection = session.loadAll(MusicalInstrument.class, filters);
+            collection = session.loadAll(MusicalInstrument.class,
+                    lookupFilters(MusicalInstrument.class, musicalInstrument.getName()));
         } else if (clazz.equals(MusicianInstrument.class)) {
             // MusicianInstrument
             MusicianInstrument musicianInstrument = (MusicianInstrument) entity;
-            filters.add(new Filter("musician", EQUALS, musicianInstrument.getMusician()))
-                    .and(new Filter("musicalInstruments", EQUALS, musicianInstrument.getMusicalInstruments()));
-            collection = session.loadAll(MusicianInstrument.class, filters);
+            collection = session.loadAll(MusicianInstrument.class, lookupFilters(MusicianInstrument.class,
+                    musicianInstrument.getMusician(), musicianInstrument.getMusicalInstruments()));
         }
         Entity existingEntity = null;
         if (!collection.isEmpty()) {
@@ -106,14 +899,36 @@ public class Neo4jDAO implements DAO {
         return (T) existingEntity;
     }
 
+    /**
+     * Filters matching the LOOKUP_FIELDS of the class to the values.
+     */
+    private static Filters lookupFilters(Class<? extends Entity> clazz, Object... values) {
+        List<String> fields = LOOKUP_FIELDS.get(clazz);
+        Filters filters = new Filters();
+        for (int i = 0; i < fields.size(); i++) {
+            Filter filter = new Filter(fields.get(i), EQUALS, values[i]);
+            if (i == 0)
+                filters.add(filter);
+            else
+                filters.and(filter);
+        }
+        return filters;
+    }
+
     // work from group 11
     @Override
     public Album findAlbumByYearNumberName(Integer releaseYear, String recordNumber, String name) {
-        Filters filters = new Filters();
-        filters.add(new Filter("albumName", EQUALS, name)
-                .and(new Filter("recordNumber", EQUALS, recordNumber))
-                .and(new Filter("releaseYear", EQUALS, releaseYear)));
-        Collection<Album> albums = session.loadAll(Album.class, filters);
+        Map<String, Object> naturalKey = Maps.newHashMap();
+        naturalKey.put("albumName", name);
+        naturalKey.put("recordNumber", recordNumber);
+        naturalKey.put("releaseYear", releaseYear);
+        return lookup(Album.class, naturalKey,
+                () -> withSession(session -> loadAlbumByYearNumberName(session, releaseYear, recordNumber, name)));
+    }
+
+    private Album loadAlbumByYearNumberName(Session session, Integer releaseYear, String recordNumber, String name) {
+        Collection<Album> albums = session.loadAll(Album.class,
+                lookupFilters(Album.class, name, recordNumber, releaseYear));
         if (albums.isEmpty()) {
             return null;
         } else {
@@ -123,13 +938,118 @@ public class Neo4jDAO implements DAO {
 
     @Override
     public MusicalInstrument findMusicalInstrumentByName(String name) {
-        Filters filters = new Filters();
-        filters.add(new Filter("name", EQUALS, name));
-        Collection<MusicalInstrument> musicalInstruments = session.loadAll(MusicalInstrument.class, filters);
+        return lookup(MusicalInstrument.class, Collections.singletonMap("musicalInstrumentName", name),
+                () -> withSession(session -> loadMusicalInstrumentByName(session, name)));
+    }
+
+    private MusicalInstrument loadMusicalInstrumentByName(Session session, String name) {
+        Collection<MusicalInstrument> musicalInstruments = session.loadAll(MusicalInstrument.class,
+                lookupFilters(MusicalInstrument.class, name));
         if (musicalInstruments.isEmpty()) {
             return null;
         } else {
             return musicalInstruments.iterator().next();
         }
     }
+
+    /**
+     * Iterates over the entities of a class, one page of the session at a time.
+     */
+    private class Pages<T extends Entity> implements Iterator<T> {
+        private final Class<T> clazz;
+        private final String cypher;
+        private final String idCypher;
+        private final int pageSize;
+        private List<T> page = Collections.emptyList();
+        private final Set<Long> pageIds = Sets.newHashSet();
+        // the nodes the page and its prefetches mapped into a shared session
+        private final Set<Long> loaded = Sets.newHashSet();
+        private int next;
+        private long lastId = -1;
+        private boolean exhausted;
+
+        Pages(Class<T> clazz, int pageSize) {
+            this.clazz = clazz;
+            this.pageSize = pageSize;
+            String match = "MATCH (n:" + clazz.getSimpleName() + ") WHERE id(n) > $after ";
+            this.cypher = match + "RETURN n ORDER BY id(n) LIMIT $pageSize";
+            this.idCypher = match + "RETURN id(n) AS id ORDER BY id(n) LIMIT $pageSize";
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == page.size() && !exhausted)
+                fetch();
+            return next < page.size();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            return page.get(next++);
+        }
+
+        private void fetch() {
+            Map<String, Object> parameters = ImmutableMap.of("after", lastId, "pageSize", pageSize);
+            page = withSession(session -> {
+                // a pooled session is cleared anyway
+                if (!sessions.isShared())
+                    return Lists.newArrayList(session.query(clazz, cypher, parameters));
+
+                letGo(session);
+                List<Map<String, Object>> rows = Lists.newArrayList(session.query(idCypher, parameters).queryResults());
+                track(session, rows);
+                List<Long> ids = Lists.newArrayListWithCapacity(rows.size());
+                for (Map<String, Object> row : rows)
+                    ids.add(((Number) row.get("id")).longValue());
+                Map<Long, T> byId = Maps.newHashMap();
+                for (T entity : session.loadAll(clazz, ids, DEPTH_LIST))
+                    byId.put(entity.getId(), entity);
+                List<T> fetched = Lists.newArrayListWithCapacity(ids.size());
+                for (Long id : ids)
+                    fetched.add(byId.get(id));
+                return fetched;
+            });
+            next = 0;
+            exhausted = page.size() < pageSize;
+            pageIds.clear();
+            for (T entity : page) {
+                pageIds.add(entity.getId());
+                lastId = Math.max(lastId, entity.getId());
+            }
+        }
+
+        boolean holds(Long id) {
+            return pageIds.contains(id) || loaded.contains(id);
+        }
+
+        /**
+         * Remembers the nodes of the rows the shared session does not hold yet, which loading
+         * them maps into it.
+         */
+        void track(Session session, Iterable<Map<String, Object>> rows) {
+            for (Map<String, Object> row : rows) {
+                Long id = ((Number) row.get("id")).longValue();
+                if (!(session instanceof Neo4jSession) || ((Neo4jSession) session).context().getNodeEntity(id) == null)
+                    loaded.add(id);
+            }
+        }
+
+        void release() {
+            openPages.remove(this);
+            page = Collections.emptyList();
+            pageIds.clear();
+            next = 0;
+            if (sessions.isShared())
+                withSession(this::letGo);
+        }
+
+        private Void letGo(Session session) {
+            for (Long id : loaded)
+                session.detachNodeEntity(id);
+            loaded.clear();
+            return null;
+        }
+    }
 }
@@ -0,0 +1,146 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.NaturalKey;
+import allaboutecm.model.Entity;
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.metadata.ClassInfo;
+import org.neo4j.ogm.metadata.FieldInfo;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes and uniqueness constraints backing the natural key lookups and merges
+ * of Neo4jDAO, for every mapped class with a NaturalId.
+ *
+ * A natural key of one property gets a uniqueness constraint, which also indexes it. A key of
+ * several properties gets a composite index, uniqueness over several properties needs a node
+ * key constraint, which the community edition does not have.
+ *
+ * Before anything is created the fields Neo4jDAO filters its lookups on are checked against
+ * the fields OGM maps. Filters are written with field names and Cypher with property names,
+ * and the two differ for MusicalInstrument, whose name field is stored as musicalInstrumentName.
+ */
+public class SchemaManager {
+    private static final Logger logger = LogManager.getLogger(SchemaManager.class);
+
+    private final SessionFactory sessionFactory;
+
+    public SchemaManager(SessionFactory sessionFactory) {
+        Validate.notNull(sessionFactory);
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Opens a SessionFactory over the packages and bootstraps its schema before returning it.
+     */
+    public static SessionFactory openSessionFactory(Configuration configuration, String... packages) {
+        SessionFactory sessionFactory = new SessionFactory(configuration, packages);
+        try {
+            new SchemaManager(sessionFactory).bootstrap();
+        } catch (RuntimeException e) {
+            sessionFactory.close();
+            throw e;
+        }
+        return sessionFactory;
+    }
+
+    /**
+     * The natural keys of the classes mapped by the SessionFactory.
+     */
+    @SuppressWarnings("unchecked")
+    public List<NaturalKey<?>> naturalKeys() {
+        List<NaturalKey<?>> keys = Lists.newArrayList();
+        for (ClassInfo classInfo : sessionFactory.metaData().persistentEntities()) {
+            Class<?> type = classInfo.getUnderlyingClass();
+            if (type == null || !Entity.class.isAssignableFrom(type))
+                continue;
+            NaturalKey<?> key = NaturalKey.of((Class<Entity>) type);
+            if (key != null)
+                keys.add(key);
+        }
+        keys.sort((a, b) -> a.getLabel().compareTo(b.getLabel()));
+        return keys;
+    }
+
+    /**
+     * Checks that every natural key field, and every field Neo4jDAO filters its lookups on,
+     * is a field OGM maps.
+     *
+     * @throws IllegalStateException listing the fields that are not
+     */
+    public void validate() {
+        validate(Neo4jDAO.LOOKUP_FIELDS);
+    }
+
+    void validate(Map<Class<? extends Entity>, List<String>> lookupFields) {
+        List<String> problems = Lists.newArrayList();
+        for (NaturalKey<?> key : naturalKeys()) {
+            ClassInfo classInfo = sessionFactory.metaData().classInfo(key.getType());
+            for (String field : key.getFieldNames()) {
+                if (!mapsField(classInfo, field))
+                    problems.add(key.getLabel() + "." + field + " is not mapped to a property");
+            }
+        }
+        for (Map.Entry<Class<? extends Entity>, List<String>> entry : lookupFields.entrySet()) {
+            String label = entry.getKey().getSimpleName();
+            ClassInfo classInfo = sessionFactory.metaData().classInfo(entry.getKey());
+            if (classInfo == null) {
+                problems.add(label + " is not mapped");
+                continue;
+            }
+            for (String field : entry.getValue()) {
+                if (!mapsField(classInfo, field))
+                    problems.add(label + "." + field + " is not a mapped field");
+            }
+        }
+        if (!problems.isEmpty())
+            throw new IllegalStateException("Invalid natural keys: " + String.join(", ", problems));
+    }
+
+    /**
+     * Whether OGM maps a field of that name, ClassInfo.getFieldInfo would also take a property name.
+     */
+    private static boolean mapsField(ClassInfo classInfo, String fieldName) {
+        for (FieldInfo fieldInfo : classInfo.fieldsInfo().fields()) {
+            if (fieldInfo.getName().equals(fieldName))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * The Cypher statements creating the schema, each of them does nothing if what it creates exists.
+     */
+    public List<String> schemaStatements() {
+        List<String> statements = Lists.newArrayList();
+        for (NaturalKey<?> key : naturalKeys()) {
+            if (key.getProperties().size() == 1) {
+                statements.add("CREATE CONSTRAINT ON (n:" + key.getLabel() + ") ASSERT n."
+                        + key.getProperties().get(0) + " IS UNIQUE");
+            } else {
+                statements.add("CREATE INDEX ON :" + key.getLabel() + "(" + String.join(", ", key.getProperties()) + ")");
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * Validates the natural keys and creates their indexes and constraints.
+     */
+    public void bootstrap() {
+        validate();
+        Session session = sessionFactory.openSession();
+        for (String statement : schemaStatements()) {
+            logger.info("Schema: {}", statement);
+            session.query(statement, Collections.emptyMap());
+        }
+    }
+}
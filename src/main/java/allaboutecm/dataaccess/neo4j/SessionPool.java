@@ -0,0 +1,73 @@
+package allaboutecm.dataaccess.neo4j;
+
+import org.apache.commons.lang3.Validate;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The sessions Neo4jDAO runs its operations on.
+ *
+ * A pool over a SessionFactory hands each operation a session of its own, at most size of
+ * them at a time, an operation waits while they are all in use. A session is cleared when it
+ * is given back, so no entity is kept in its mapping context from one unit of work to the next.
+ * A pool over a single session hands that session to every operation and never clears it, it
+ * is only safe for one thread at a time.
+ */
+class SessionPool {
+    private final Session shared;
+    private final BlockingQueue<Session> idle;
+
+    private SessionPool(Session shared, BlockingQueue<Session> idle) {
+        this.shared = shared;
+        this.idle = idle;
+    }
+
+    static SessionPool of(Session session) {
+        Validate.notNull(session);
+        return new SessionPool(session, null);
+    }
+
+    static SessionPool of(SessionFactory sessionFactory, int size) {
+        Validate.notNull(sessionFactory);
+        if (size <= 0)
+            throw new IllegalArgumentException("The pool size must be positive");
+        BlockingQueue<Session> idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++)
+            idle.add(sessionFactory.openSession());
+        return new SessionPool(null, idle);
+    }
+
+    /**
+     * Whether every operation runs on the same session, whose mapping context is kept.
+     */
+    boolean isShared() {
+        return shared != null;
+    }
+
+    /**
+     * Takes a session for one operation, waiting for one to be released if needed.
+     */
+    Session acquire() {
+        if (shared != null)
+            return shared;
+        try {
+            return idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a session", e);
+        }
+    }
+
+    void release(Session session) {
+        if (shared != null)
+            return;
+        try {
+            session.clear();
+        } finally {
+            idle.add(session);
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Inverted indexes from genre and from featured musician name to the albums carrying them.
+ *
+ * Every indexed album gets a dense ordinal, and each posting list is a sorted array of
+ * ordinals, so a genre and musician query is the intersection of two sorted arrays.
+ * Albums can be added and removed one at a time, which keeps the index in step with
+ * writes to the DAO without rebuilding it. A re-added album keeps its ordinal and the
+ * ordinals of removed albums are given to the next new ones, so the index does not grow
+ * with the number of writes.
+ */
+public class AlbumIndex {
+    private final List<Album> albums = Lists.newArrayList();
+    // the keys each ordinal was indexed under, albums may have changed since
+    private final List<String> genres = Lists.newArrayList();
+    private final List<List<String>> musicianNames = Lists.newArrayList();
+    private final Map<Album, Integer> ordinals = Maps.newHashMap();
+    private final Map<String, Postings> byGenre = Maps.newHashMap();
+    private final Map<String, Postings> byMusician = Maps.newHashMap();
+    private final Deque<Integer> freeOrdinals = new ArrayDeque<>();
+
+    public static AlbumIndex of(Iterable<Album> albums) {
+        AlbumIndex index = new AlbumIndex();
+        for (Album album : albums)
+            index.add(album);
+        return index;
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+
+    /**
+     * Indexes an album, replacing the entry of an equal album that was indexed before.
+     */
+    public void add(Album album) {
+        List<String> names = Lists.newArrayList();
+        for (Musician musician : featuredMusicians(album))
+            names.add(musician.getName());
+
+        Integer indexed = ordinals.remove(album);
+        if (indexed != null) {
+            ordinals.put(album, indexed);
+            albums.set(indexed, album);
+            if (Objects.equals(genres.get(indexed), album.getGenre()) && musicianNames.get(indexed).equals(names))
+                return;
+            unpost(indexed);
+        }
+
+        int ordinal;
+        if (indexed != null) {
+            ordinal = indexed;
+        } else if (!freeOrdinals.isEmpty()) {
+            ordinal = freeOrdinals.pop();
+            albums.set(ordinal, album);
+        } else {
+            ordinal = albums.size();
+            albums.add(album);
+            genres.add(null);
+            musicianNames.add(null);
+        }
+        ordinals.put(album, ordinal);
+        genres.set(ordinal, album.getGenre());
+        musicianNames.set(ordinal, names);
+
+        if (album.getGenre() != null)
+            byGenre.computeIfAbsent(album.getGenre(), g -> new Postings()).add(ordinal);
+        for (String name : names)
+            byMusician.computeIfAbsent(name, m -> new Postings()).add(ordinal);
+    }
+
+    public void remove(Album album) {
+        Integer ordinal = ordinals.remove(album);
+        if (ordinal == null)
+            return;
+
+        unpost(ordinal);
+        albums.set(ordinal, null);
+        genres.set(ordinal, null);
+        musicianNames.set(ordinal, null);
+        freeOrdinals.push(ordinal);
+    }
+
+    /**
+     * Removes the musician from the albums it was indexed with.
+     */
+    public void removeMusician(String musicianName) {
+        Postings postings = byMusician.remove(musicianName);
+        if (postings == null)
+            return;
+        for (int i = 0; i < postings.size; i++) {
+            int ordinal = postings.ordinals[i];
+            List<String> names = Lists.newArrayList(musicianNames.get(ordinal));
+            names.removeIf(musicianName::equals);
+            musicianNames.set(ordinal, names);
+        }
+    }
+
+    /**
+     * Removes the ordinal from the posting lists it was indexed in.
+     */
+    private void unpost(int ordinal) {
+        String genre = genres.get(ordinal);
+        if (genre != null)
+            removePosting(byGenre, genre, ordinal);
+        for (String name : musicianNames.get(ordinal))
+            removePosting(byMusician, name, ordinal);
+    }
+
+    /**
+     * Number of ordinals handed out, including the free ones.
+     */
+    int capacity() {
+        return albums.size();
+    }
+
+    /**
+     * Returns the k albums of the given genre, featuring the given musician unless it is blank,
+     * that are most similar to the rest of the matching albums.
+     *
+     * The similarity of an album is the number of its featured musicians (other than the
+     * requested one) and of the instruments played on it that also appear on other matching
+     * albums. Albums with the same similarity are ranked by release year, record number and name.
+     */
+    public List<Album> mostSimilar(int k, String genre, String featuredMusician) {
+        if (k <= 0 || genre == null || genre.isEmpty())
+            return Lists.newArrayList();
+
+        Postings candidates = byGenre.get(genre);
+        if (candidates != null && featuredMusician != null && !featuredMusician.isEmpty())
+            candidates = Postings.intersect(candidates, byMusician.get(featuredMusician));
+        if (candidates == null || candidates.size == 0)
+            return Lists.newArrayList();
+
+        // how many of the candidate albums each musician and instrument appears on, the
+        // musicians as indexed, so without those removed since
+        Map<String, Integer> musicianFrequency = Maps.newHashMap();
+        Map<MusicalInstrument, Integer> instrumentFrequency = Maps.newHashMap();
+        for (int i = 0; i < candidates.size; i++) {
+            int ordinal = candidates.ordinals[i];
+            for (String name : musicianNames.get(ordinal))
+                musicianFrequency.merge(name, 1, Integer::sum);
+            for (MusicalInstrument instrument : instruments(albums.get(ordinal)))
+                instrumentFrequency.merge(instrument, 1, Integer::sum);
+        }
+
+        TopKSelector<Album> selector = new TopKSelector<>(k, ECMMiner.ALBUM_ORDER);
+        for (int i = 0; i < candidates.size; i++) {
+            int ordinal = candidates.ordinals[i];
+            Album album = albums.get(ordinal);
+            int shared = 0;
+            for (String name : musicianNames.get(ordinal)) {
+                if (!name.equals(featuredMusician) && musicianFrequency.get(name) > 1)
+                    shared++;
+            }
+            for (MusicalInstrument instrument : instruments(album)) {
+                if (instrumentFrequency.get(instrument) > 1)
+                    shared++;
+            }
+            selector.offer(album, shared);
+        }
+        return selector.toList();
+    }
+
+    private static List<Musician> featuredMusicians(Album album) {
+        return album.getFeaturedMusicians() == null ? Lists.newArrayList() : album.getFeaturedMusicians();
+    }
+
+    private static List<MusicalInstrument> instruments(Album album) {
+        List<MusicalInstrument> instruments = Lists.newArrayList();
+        if (album.getInstruments() == null)
+            return instruments;
+        for (MusicianInstrument musicianInstrument : album.getInstruments()) {
+            for (MusicalInstrument instrument : musicianInstrument.getMusicalInstruments()) {
+                if (!instruments.contains(instrument))
+                    instruments.add(instrument);
+            }
+        }
+        return instruments;
+    }
+
+    private static void removePosting(Map<String, Postings> index, String key, int ordinal) {
+        Postings postings = index.get(key);
+        if (postings == null)
+            return;
+        postings.remove(ordinal);
+        if (postings.size == 0)
+            index.remove(key);
+    }
+
+    /**
+     * A sorted, growable array of album ordinals.
+     */
+    private static class Postings {
+        private int[] ordinals = new int[4];
+        private int size;
+
+        void append(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal)
+                return;
+            if (size == ordinals.length)
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            ordinals[size++] = ordinal;
+        }
+
+        /**
+         * Inserts the ordinal in order, a reused ordinal can be lower than the ones listed.
+         */
+        void add(int ordinal) {
+            if (size == 0 || ordinals[size - 1] < ordinal) {
+                append(ordinal);
+                return;
+            }
+            int i = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i >= 0)
+                return;
+            i = -i - 1;
+            if (size == ordinals.length)
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            System.arraycopy(ordinals, i, ordinals, i + 1, size - i);
+            ordinals[i] = ordinal;
+            size++;
+        }
+
+        void remove(int ordinal) {
+            int i = Arrays.binarySearch(ordinals, 0, size, ordinal);
+            if (i < 0)
+                return;
+            System.arraycopy(ordinals, i + 1, ordinals, i, size - i - 1);
+            size--;
+        }
+
+        static Postings intersect(Postings a, Postings b) {
+            Postings answer = new Postings();
+            if (b == null)
+                return answer;
+            int i = 0;
+            int j = 0;
+            while (i < a.size && j < b.size) {
+                if (a.ordinals[i] < b.ordinals[j]) {
+                    i++;
+                } else if (a.ordinals[i] > b.ordinals[j]) {
+                    j++;
+                } else {
+                    answer.append(a.ordinals[i]);
+                    i++;
+                    j++;
+                }
+            }
+            return answer;
+        }
+    }
+}
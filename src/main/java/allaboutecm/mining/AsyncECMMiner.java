@@ -0,0 +1,74 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.AsyncDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import org.apache.commons.lang3.Validate;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the ECMMiner queries on an executor and returns futures of their answers. Invalid
+ * arguments fail the future with the IllegalArgumentException the query would throw, and a
+ * query rejected by the executor fails it with RejectedExecutionException.
+ *
+ * The miner reads through its DAO unless it has a snapshot or aggregates, so with several
+ * threads the DAO must be safe to share between them.
+ */
+public class AsyncECMMiner {
+    private final ECMMiner miner;
+    private final Executor executor;
+
+    public AsyncECMMiner(ECMMiner miner, Executor executor) {
+        Validate.notNull(miner);
+        Validate.notNull(executor);
+        this.miner = miner;
+        this.executor = executor;
+    }
+
+    public ECMMiner getMiner() {
+        return miner;
+    }
+
+    public CompletableFuture<List<Musician>> mostProlificMusicians(int k, int startYear, int endYear) {
+        return AsyncDAO.supply(() -> miner.mostProlificMusicians(k, startYear, endYear), executor);
+    }
+
+    public CompletableFuture<List<Musician>> mostTalentedMusicians(int k) {
+        return AsyncDAO.supply(() -> miner.mostTalentedMusicians(k), executor);
+    }
+
+    public CompletableFuture<List<Musician>> mostSocialMusicians(int k) {
+        return AsyncDAO.supply(() -> miner.mostSocialMusicians(k), executor);
+    }
+
+    public CompletableFuture<List<Integer>> busiestYears(int k) {
+        return AsyncDAO.supply(() -> miner.busiestYears(k), executor);
+    }
+
+    public CompletableFuture<List<Album>> mostSimilarAlbums(int k, String genre, String featuredMusician) {
+        return AsyncDAO.supply(() -> miner.mostSimilarAlbums(k, genre, featuredMusician), executor);
+    }
+
+    public CompletableFuture<List<Album>> bestKSellingAlbums(int k) {
+        return AsyncDAO.supply(() -> miner.bestKSellingAlbums(k), executor);
+    }
+
+    public CompletableFuture<List<Album>> topKRatedAlbums(int k) {
+        return AsyncDAO.supply(() -> miner.topKRatedAlbums(k), executor);
+    }
+
+    public CompletableFuture<List<Musician>> topKRatedMusicians(int k) {
+        return AsyncDAO.supply(() -> miner.topKRatedMusicians(k), executor);
+    }
+
+    public CompletableFuture<List<Album>> musiciansHighestRatedAlbums(String featuredMusician, int k) {
+        return AsyncDAO.supply(() -> miner.musiciansHighestRatedAlbums(featuredMusician, k), executor);
+    }
+
+    public CompletableFuture<MiningResults> runBatch(List<? extends MiningQuery<?>> queries) {
+        return AsyncDAO.supply(() -> miner.runBatch(queries), executor);
+    }
+}
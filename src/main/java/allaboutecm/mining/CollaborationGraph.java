@@ -0,0 +1,173 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Which musicians are featured on which albums, with musicians mapped to dense int ids and
+ * both directions stored in compressed sparse row form: for every album the ids of its
+ * musicians, and for every musician the indexes of their albums.
+ *
+ * Two musicians collaborate when they are featured on the same album. Building the graph is
+ * linear in the number of featured musician entries, the collaborators are reached through
+ * the shared albums instead of materialising every pair.
+ */
+public class CollaborationGraph {
+    private final Musician[] musicians;
+    private final Map<Musician, Integer> ids;
+
+    // musiciansOf[musicianOffsets[a] .. musicianOffsets[a + 1]) are the musicians of album a
+    private final int[] musicianOffsets;
+    private final int[] musiciansOf;
+
+    // albumsOf[albumOffsets[m] .. albumOffsets[m + 1]) are the albums of musician m
+    private final int[] albumOffsets;
+    private final int[] albumsOf;
+
+    private volatile int[] degrees;
+
+    private CollaborationGraph(Musician[] musicians, Map<Musician, Integer> ids,
+                               int[] musicianOffsets, int[] musiciansOf) {
+        this.musicians = musicians;
+        this.ids = ids;
+        this.musicianOffsets = musicianOffsets;
+        this.musiciansOf = musiciansOf;
+
+        // invert album -> musicians into musician -> albums with a counting sort
+        int albumCount = musicianOffsets.length - 1;
+        albumOffsets = new int[musicians.length + 1];
+        for (int i = 0; i < musiciansOf.length; i++)
+            albumOffsets[musiciansOf[i] + 1]++;
+        for (int m = 0; m < musicians.length; m++)
+            albumOffsets[m + 1] += albumOffsets[m];
+        albumsOf = new int[musiciansOf.length];
+        int[] next = Arrays.copyOf(albumOffsets, musicians.length);
+        for (int a = 0; a < albumCount; a++) {
+            for (int i = musicianOffsets[a]; i < musicianOffsets[a + 1]; i++)
+                albumsOf[next[musiciansOf[i]]++] = a;
+        }
+    }
+
+    public static CollaborationGraph of(Iterable<Album> albums) {
+        Map<Musician, Integer> ids = Maps.newHashMap();
+        Musician[] musicians = new Musician[16];
+        int[] musicianOffsets = new int[17];
+        int[] musiciansOf = new int[16];
+        // the last album each musician was added to, to skip a musician listed twice on an album
+        int[] lastAlbum = new int[16];
+        int albumCount = 0;
+        int entries = 0;
+
+        for (Album album : albums) {
+            if (album.getFeaturedMusicians() == null)
+                continue;
+            for (Musician musician : album.getFeaturedMusicians()) {
+                Integer id = ids.get(musician);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(musician, id);
+                    if (id == musicians.length) {
+                        musicians = Arrays.copyOf(musicians, id * 2);
+                        lastAlbum = Arrays.copyOf(lastAlbum, id * 2);
+                    }
+                    musicians[id] = musician;
+                    lastAlbum[id] = -1;
+                }
+                if (lastAlbum[id] == albumCount)
+                    continue;
+                lastAlbum[id] = albumCount;
+                if (entries == musiciansOf.length)
+                    musiciansOf = Arrays.copyOf(musiciansOf, entries * 2);
+                musiciansOf[entries++] = id;
+            }
+            albumCount++;
+            if (albumCount + 1 == musicianOffsets.length)
+                musicianOffsets = Arrays.copyOf(musicianOffsets, musicianOffsets.length * 2);
+            musicianOffsets[albumCount] = entries;
+        }
+
+        return new CollaborationGraph(Arrays.copyOf(musicians, ids.size()), ids,
+                Arrays.copyOf(musicianOffsets, albumCount + 1), Arrays.copyOf(musiciansOf, entries));
+    }
+
+    public int musicianCount() {
+        return musicians.length;
+    }
+
+    public Musician musician(int id) {
+        return musicians[id];
+    }
+
+    /**
+     * Returns the number of distinct other musicians the musician is featured with,
+     * or -1 when the musician is not featured on any album.
+     */
+    public int degree(Musician musician) {
+        Integer id = ids.get(musician);
+        if (id == null)
+            return -1;
+        int[] computed = degrees;
+        if (computed != null)
+            return computed[id];
+
+        // a single lookup only touches the musician's own albums
+        int size = 0;
+        for (int i = albumOffsets[id]; i < albumOffsets[id + 1]; i++) {
+            int album = albumsOf[i];
+            size += musicianOffsets[album + 1] - musicianOffsets[album];
+        }
+        int[] collaborators = new int[size];
+        size = 0;
+        for (int i = albumOffsets[id]; i < albumOffsets[id + 1]; i++) {
+            int album = albumsOf[i];
+            for (int j = musicianOffsets[album]; j < musicianOffsets[album + 1]; j++)
+                collaborators[size++] = musiciansOf[j];
+        }
+        Arrays.sort(collaborators);
+        int degree = 0;
+        for (int i = 0; i < size; i++) {
+            if (collaborators[i] != id && (i == 0 || collaborators[i] != collaborators[i - 1]))
+                degree++;
+        }
+        return degree;
+    }
+
+    /**
+     * Returns the number of distinct collaborators of every musician, indexed by musician id.
+     * They are computed in parallel on the first call and kept afterwards.
+     */
+    public int[] degrees() {
+        int[] computed = degrees;
+        if (computed == null) {
+            computed = new int[musicians.length];
+            int[] answer = computed;
+            // each worker marks collaborators in its own array, stamped with the id of the
+            // musician being counted so the array never needs clearing
+            ThreadLocal<int[]> marks = ThreadLocal.withInitial(() -> new int[musicians.length]);
+            IntStream.range(0, musicians.length).parallel().forEach(m -> {
+                int[] marked = marks.get();
+                int stamp = m + 1;
+                marked[m] = stamp;
+                int degree = 0;
+                for (int i = albumOffsets[m]; i < albumOffsets[m + 1]; i++) {
+                    int album = albumsOf[i];
+                    for (int j = musicianOffsets[album]; j < musicianOffsets[album + 1]; j++) {
+                        int other = musiciansOf[j];
+                        if (marked[other] != stamp) {
+                            marked[other] = stamp;
+                            degree++;
+                        }
+                    }
+                }
+                answer[m] = degree;
+            });
+            degrees = computed;
+        }
+        return computed;
+    }
+}
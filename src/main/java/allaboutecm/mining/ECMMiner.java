@@ -1,36 +1,335 @@
 package allaboutecm.mining;
 
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.IntProjection;
 import allaboutecm.model.Album;
 import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
 import com.google.common.collect.*;
+import com.google.common.primitives.Longs;
+import org.apache.commons.lang3.Validate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Stream;
 
 /**
  * Note that you can extend the Neo4jDAO class to make implementing this class easier.
+ *
+ * Queries read through the DAO until a MiningSnapshot is published with refreshSnapshot,
+ * after that they are answered from the current snapshot without touching the store.
+ * Aggregates attached with attachAggregates follow every write made through the DAO and
+ * take precedence over a snapshot, they are rebuilt after a bulk delete.
+ *
+ * Reading through the DAO, the queries following relationships prefetch them for all the
+ * loaded entities with DAO.prefetch, except when streaming. The aggregations run on the
+ * calling thread unless a ForkJoinPool is set, then they are split into chunks aggregated
+ * in parallel with the same answers.
+ * With a streaming page size set they instead fold the entities page by page from DAO.stream,
+ * without holding a whole collection in memory.
+ *
+ * With projections on, the queries ranking on a single int field (busiestYears, bestKSellingAlbums,
+ * topKRatedAlbums and topKRatedMusicians) read that field with DAO.projectInt and load only
+ * the entities that can make the top k.
  */
 public class ECMMiner {
+    private static final Logger logger = LogManager.getLogger(ECMMiner.class);
+
+    /**
+     * Musicians with the same score are ranked by name.
+     */
+    static final Comparator<Musician> MUSICIAN_ORDER = Comparator.comparing(Musician::getName);
+
+    /**
+     * Albums with the same score are ranked by release year, then record number, then name.
+     */
+    static final Comparator<Album> ALBUM_ORDER = Comparator.comparingInt(Album::getReleaseYear)
+            .thenComparing(Album::getRecordNumber)
+            .thenComparing(Album::getAlbumName);
 
     private final DAO dao;
+    private final AtomicReference<MiningSnapshot> snapshot = new AtomicReference<>();
+    // serialises rebuilds so that an older snapshot never replaces a newer one
+    private final Object refreshLock = new Object();
+    private volatile MiningAggregates aggregates;
+    private volatile ForkJoinAggregations parallel;
+    private volatile int streamingPageSize;
+    private volatile boolean projecting;
 
     public ECMMiner(DAO dao) {
         this.dao = dao;
     }
 
-    private <T extends Entity> List<T> buildListAnswer(int k, Map<Integer, List<T>> countMap) {
-        List<Integer> countList = Lists.newArrayList(countMap.keySet());
-        countList.sort((i1, i2) -> i2 > i1 ? 1 : -1);
+    /**
+     * Returns the snapshot queries are answered from, or null when they read through the DAO.
+     */
+    public MiningSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Builds a new snapshot from the DAO and publishes it once it is complete. Queries running
+     * meanwhile keep reading the previous snapshot.
+     */
+    public MiningSnapshot refreshSnapshot() {
+        synchronized (refreshLock) {
+            MiningSnapshot built = MiningSnapshot.load(dao);
+            snapshot.set(built);
+            return built;
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot on the executor.
+     */
+    public CompletableFuture<MiningSnapshot> refreshSnapshotAsync(Executor executor) {
+        Validate.notNull(executor);
+        return CompletableFuture.supplyAsync(this::refreshSnapshot, executor);
+    }
+
+    /**
+     * Rebuilds the snapshot on the executor every period, starting immediately. A failed
+     * rebuild is logged and the previous snapshot is kept until the next one.
+     */
+    public ScheduledFuture<?> scheduleSnapshotRefresh(ScheduledExecutorService executor, long period, TimeUnit unit) {
+        Validate.notNull(executor);
+        Validate.notNull(unit);
+        if (period <= 0)
+            throw new IllegalArgumentException("period must be positive");
+
+        return executor.scheduleWithFixedDelay(() -> {
+            try {
+                refreshSnapshot();
+            } catch (RuntimeException e) {
+                logger.error("Failed to refresh the mining snapshot", e);
+            }
+        }, 0, period, unit);
+    }
+
+    /**
+     * Drops the current snapshot, queries read through the DAO again.
+     */
+    public void clearSnapshot() {
+        snapshot.set(null);
+    }
+
+    /**
+     * Builds aggregates over the store and keeps them up to date with the writes made through
+     * the DAO, queries are answered from them until they are detached.
+     */
+    public synchronized MiningAggregates attachAggregates() {
+        if (aggregates == null)
+            aggregates = MiningAggregates.attach(dao);
+        return aggregates;
+    }
 
-        List<T> answer = Lists.newArrayList();
-        for (Integer i : countList.subList(0, k)) {
-            List<T> toAdd = countMap.get(i);
-            if ((answer.size() + toAdd.size()) <= k)
-                answer.addAll(toAdd);
+    public synchronized void detachAggregates() {
+        if (aggregates != null) {
+            dao.removeChangeListener(aggregates);
+            aggregates = null;
         }
-        return answer;
+    }
+
+    /**
+     * Runs the aggregations on the pool, or on the calling thread when the pool is null.
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.parallel = pool == null ? null : new ForkJoinAggregations(pool, ForkJoinAggregations.DEFAULT_CHUNK_SIZE);
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        ForkJoinAggregations current = parallel;
+        return current == null ? null : current.getPool();
+    }
+
+    /**
+     * Reads through the DAO pageSize entities at a time with DAO.stream, or loads whole
+     * collections when the page size is 0. Streaming takes precedence over a ForkJoinPool.
+     */
+    public void setStreamingPageSize(int pageSize) {
+        if (pageSize < 0)
+            throw new IllegalArgumentException("pageSize cannot be negative");
+        this.streamingPageSize = pageSize;
+    }
+
+    public int getStreamingPageSize() {
+        return streamingPageSize;
+    }
+
+    /**
+     * Ranks on projected int fields instead of loaded entities where a query allows it. Ties
+     * with the k-th entity are then decided by id rather than by the order of the query.
+     */
+    public void setProjecting(boolean projecting) {
+        this.projecting = projecting;
+    }
+
+    public boolean isProjecting() {
+        return projecting;
+    }
+
+    /**
+     * Evaluates the queries together. Each collection the queries read is loaded once and
+     * scanned once, every query folding the entities into its own accumulator, instead of
+     * one load and one scan per query.
+     *
+     * @Param queries the queries to be evaluated, their answers are read from the result with MiningResults.get.
+     */
+    public MiningResults runBatch(List<? extends MiningQuery<?>> queries) {
+        Validate.notNull(queries);
+        Validate.noNullElements(queries);
+
+        MiningResults results = new MiningResults();
+        MiningView view = currentView();
+        if (view != null) {
+            for (MiningQuery<?> query : queries)
+                answerFromView(query, view, results);
+            return results;
+        }
+
+        Set<MiningQuery.Source> sources = EnumSet.noneOf(MiningQuery.Source.class);
+        List<MiningQuery.Accumulator<?>> accumulators = Lists.newArrayListWithCapacity(queries.size());
+        for (MiningQuery<?> query : queries) {
+            sources.addAll(query.getSources());
+            accumulators.add(query.newAccumulator());
+        }
+
+        if (sources.contains(MiningQuery.Source.ALBUMS)) {
+            try (Stream<Album> entities = scan(Album.class)) {
+                entities.forEach(album -> {
+                    for (MiningQuery.Accumulator<?> accumulator : accumulators)
+                        accumulator.album(album);
+                });
+            }
+        }
+        if (sources.contains(MiningQuery.Source.MUSICIANS)) {
+            try (Stream<Musician> entities = scan(Musician.class)) {
+                entities.forEach(musician -> {
+                    for (MiningQuery.Accumulator<?> accumulator : accumulators)
+                        accumulator.musician(musician);
+                });
+            }
+        }
+        if (sources.contains(MiningQuery.Source.MUSICIAN_INSTRUMENTS)) {
+            try (Stream<MusicianInstrument> entities = scan(MusicianInstrument.class)) {
+                entities.forEach(musicianInstrument -> {
+                    for (MiningQuery.Accumulator<?> accumulator : accumulators)
+                        accumulator.musicianInstrument(musicianInstrument);
+                });
+            }
+        }
+
+        for (int i = 0; i < queries.size(); i++)
+            putResult(queries.get(i), accumulators.get(i), results);
+        return results;
+    }
+
+    /**
+     * The entities of the class with their relationships, streamed from the DAO page by page
+     * when streaming is on, else loaded at once. Streamed entities come without their
+     * relationships, which are prefetched a page at a time before the page is read.
+     */
+    private <T extends Entity> Stream<T> scan(Class<T> clazz) {
+        int pageSize = streamingPageSize;
+        if (pageSize <= 0)
+            return loadGraph(dao, clazz).stream();
+        Stream<T> entities = dao.stream(clazz, pageSize);
+        return Streams.stream(Iterators.partition(entities.iterator(), pageSize))
+                .flatMap(page -> prefetchGraph(dao, clazz, page).stream())
+                .onClose(entities::close);
+    }
+
+    /**
+     * Loads every entity of the class along with the relationships the queries read, the
+     * albums of musicians, the featured musicians and instruments of albums, and the musician
+     * and instruments of musician instruments. Each relationship is prefetched for all the
+     * entities at once instead of being loaded entity by entity.
+     */
+    static <T extends Entity> Collection<T> loadGraph(DAO dao, Class<T> clazz) {
+        return prefetchGraph(dao, clazz, dao.loadAll(clazz));
+    }
+
+    static <T extends Entity, C extends Collection<T>> C prefetchGraph(DAO dao, Class<T> clazz, C entities) {
+        if (clazz == Musician.class) {
+            dao.prefetch(clazz, entities, "albums");
+        } else if (clazz == Album.class) {
+            dao.prefetch(clazz, entities, "featuredMusicians", "instruments");
+            List<MusicianInstrument> links = Lists.newArrayList();
+            for (T entity : entities) {
+                Set<MusicianInstrument> instruments = ((Album) entity).getInstruments();
+                if (instruments != null)
+                    links.addAll(instruments);
+            }
+            if (!links.isEmpty())
+                dao.prefetch(MusicianInstrument.class, links, "musicalInstruments");
+        } else if (clazz == MusicianInstrument.class) {
+            dao.prefetch(clazz, entities, "musician", "musicalInstruments");
+        }
+        return entities;
+    }
+
+    /**
+     * Answers one query from a single streamed scan of what it reads.
+     */
+    private <R> R streamed(MiningQuery<R> query) {
+        return runBatch(Collections.singletonList(query)).get(query);
+    }
+
+    /**
+     * The top k entities by an int field, ties ranked by the order. Only the k entities the
+     * projection ranks first are loaded, the score is then read from them. Entities tied with
+     * the k-th value are taken by smallest id, so ties at the boundary are decided by id.
+     */
+    private <T extends Entity> List<T> topKByProjection(Class<T> clazz, String field, int k,
+                                                         ToDoubleFunction<T> score, Comparator<? super T> ties) {
+        IntProjection projection = dao.projectInt(clazz, field);
+        TopKSelector<T> selector = new TopKSelector<>(k, ties);
+        for (T entity : dao.loadAll(clazz, Longs.asList(projection.topIds(k))))
+            selector.offer(entity, score.applyAsDouble(entity));
+        return selector.toList();
+    }
+
+    private static <R> void answerFromView(MiningQuery<R> query, MiningView view, MiningResults results) {
+        results.put(query, query.answer(view));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> void putResult(MiningQuery<R> query, MiningQuery.Accumulator<?> accumulator, MiningResults results) {
+        // the accumulator at the same position was created by this query
+        results.put(query, ((MiningQuery.Accumulator<R>) accumulator).result());
+    }
+
+    /**
+     * Returns the in-memory state queries are answered from, or null to read through the DAO.
+     */
+    MiningView currentView() {
+        MiningAggregates maintained = aggregates;
+        if (maintained != null && maintained.isStale())
+            maintained = reattachAggregates(maintained);
+        return maintained != null ? maintained : snapshot.get();
+    }
+
+    /**
+     * Replaces aggregates that went stale with a bulk delete by new ones built from the DAO,
+     * unless they were replaced or detached meanwhile.
+     */
+    private synchronized MiningAggregates reattachAggregates(MiningAggregates stale) {
+        if (aggregates == stale) {
+            dao.removeChangeListener(stale);
+            aggregates = MiningAggregates.attach(dao);
+        }
+        return aggregates;
     }
 
     /**
@@ -46,28 +345,17 @@ public class ECMMiner {
         if (endYear != -1 && startYear > endYear)    //The end year should greater that start year
             throw new IllegalArgumentException("The end year should greater that start year");
 
-        // Loading all the musicians
-        Collection<Musician> musicians = dao.loadAll(Musician.class);
-
-        // For case when total musicians is less than k
-        if (musicians.size() < k)
-            return Lists.newArrayList(musicians);
-
-        // # of musician > k
-        Map<Integer, List<Musician>> albumsCount = Maps.newHashMap();
-        for (Musician musician : musicians) {
-            int count = 0;
-            for (Album album : musician.getAlbums()) {
-                int releaseYear = album.getReleaseYear();
-                boolean toInclude = (startYear == -1 || releaseYear >= startYear) && (endYear == -1 || releaseYear <= endYear);
-                if (toInclude)
-                    count += 1;
-            }
-            List<Musician> musicianList = albumsCount.getOrDefault(count, Lists.newArrayList());
-            musicianList.add(musician);
-            albumsCount.put(count, musicianList);
-        }
-        return this.buildListAnswer(k, albumsCount);
+        MiningView view = currentView();
+        if (view != null)
+            return view.mostProlificMusicians(k, startYear, endYear);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.mostProlificMusicians(k, startYear, endYear));
+
+        Collection<Musician> musicians = loadGraph(dao, Musician.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.mostProlificMusicians(musicians, k, startYear, endYear);
+        return ReleaseYearIndex.of(musicians).mostProlific(k, startYear, endYear);
     }
 
     /**
@@ -79,28 +367,40 @@ public class ECMMiner {
         if (k <= 0)
             throw new IllegalArgumentException("k cannot be smaller than one");
 
-        Collection<MusicianInstrument> musicianInstruments = dao.loadAll(MusicianInstrument.class);
-        // Case where size of musicians < k
-        if (musicianInstruments.size() < k) {
-            List<Musician> musicians = Lists.newArrayList();
-            for (MusicianInstrument musicianInstrument : musicianInstruments)
-                musicians.add(musicianInstrument.getMusician());
-            return musicians;
-        }
+        MiningView view = currentView();
+        if (view != null)
+            return view.mostTalentedMusicians(k);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.mostTalentedMusicians(k));
+
+        Collection<MusicianInstrument> musicianInstruments = loadGraph(dao, MusicianInstrument.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.mostTalentedMusicians(musicianInstruments, k);
+        TopKSelector<Musician> selector = new TopKSelector<>(k, MUSICIAN_ORDER);
+        for (Map.Entry<Musician, Set<MusicalInstrument>> entry : instrumentsByMusician(musicianInstruments).entrySet())
+            selector.offer(entry.getKey(), entry.getValue().size());
+        return selector.toList();
+    }
 
-        Map<Integer, List<Musician>> instrumentCounts = Maps.newHashMap();
+    /**
+     * A musician can be linked to instruments through several MusicianInstruments, collects
+     * the distinct instruments of every musician so that a musician is counted once.
+     */
+    static Map<Musician, Set<MusicalInstrument>> instrumentsByMusician(Iterable<MusicianInstrument> musicianInstruments) {
+        Map<Musician, Set<MusicalInstrument>> instruments = Maps.newHashMap();
         for (MusicianInstrument ins : musicianInstruments) {
-            int count = ins.getMusicalInstruments().size();
-            List<Musician> musicianList = instrumentCounts.getOrDefault(count, Lists.newArrayList());
-            musicianList.add(ins.getMusician());
-            instrumentCounts.put(count, musicianList);
+            Set<MusicalInstrument> played = instruments.computeIfAbsent(ins.getMusician(), m -> Sets.newHashSet());
+            // the instruments of a link can have been deleted since it was saved
+            if (ins.getMusicalInstruments() != null)
+                played.addAll(ins.getMusicalInstruments());
         }
-
-        return this.buildListAnswer(k, instrumentCounts);
+        return instruments;
     }
 
     /**
      * Musicians that collaborate the most widely, by the number of other musicians they work with on albums.
+     * Musicians with the same number of collaborators are ranked by name.
      *
      * @Param k the number of musicians to be returned.
      */
@@ -108,185 +408,190 @@ public class ECMMiner {
         if (k <= 0)
             throw new IllegalArgumentException("The input number of k can not less than or equal to zero");
 
-        Collection<Album> albums = dao.loadAll(Album.class);
-
-        // Count for each musician by iterating featuredMusician within each album
-        Map<Musician, Integer> musicianCount = Maps.newHashMap();
-        for (Album album : albums) {
-            for (Musician musician : album.getFeaturedMusicians()) {
-                int count = musicianCount.getOrDefault(musician, 0);
-                count += 1;
-                musicianCount.put(musician, count);
-            }
-        }
+        MiningView view = currentView();
+        if (view != null)
+            return view.mostSocialMusicians(k);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.mostSocialMusicians(k));
+
+        Collection<Album> albums = loadGraph(dao, Album.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.mostSocialMusicians(albums, k);
+        CollaborationGraph graph = CollaborationGraph.of(albums);
+        int[] degrees = graph.degrees();
+        TopKSelector<Musician> selector = new TopKSelector<>(k, MUSICIAN_ORDER);
+        for (int id = 0; id < degrees.length; id++)
+            selector.offer(graph.musician(id), degrees[id]);
+        return selector.toList();
+    }
 
-        // Case where # of musicians <= k
-        if (musicianCount.size() <= k) {
-            return Lists.newArrayList(musicianCount.keySet());
+    /**
+     * Number of the musician's albums released in [startYear, endYear], where a bound of -1 is ignored.
+     */
+    static int countAlbums(Musician musician, int startYear, int endYear) {
+        if (musician.getAlbums() == null)
+            return 0;
+        int count = 0;
+        for (Album album : musician.getAlbums()) {
+            int year = album.getReleaseYear();
+            if ((startYear == -1 || year >= startYear) && (endYear == -1 || year <= endYear))
+                count++;
         }
+        return count;
+    }
 
-        // # of musicians > k
-        Map<Integer, List<Musician>> participationCount = Maps.newHashMap();
-        for (Map.Entry<Musician, Integer> entry : musicianCount.entrySet()) {
-            List<Musician> musicianList = participationCount.getOrDefault(entry.getValue(), Lists.newArrayList());
-            musicianList.add(entry.getKey());
-            participationCount.put(entry.getValue(), musicianList);
+    /**
+     * Whether a musician with the name is featured on the album.
+     */
+    static boolean isFeatured(Album album, String name) {
+        if (album.getFeaturedMusicians() == null)
+            return false;
+        for (Musician musician : album.getFeaturedMusicians()) {
+            if (name.equals(musician.getName()))
+                return true;
         }
-        return this.buildListAnswer(k, participationCount);
+        return false;
     }
 
     /**
      * Busiest year in terms of number of albums released.
+     * Years with the same number of albums are ranked from the earliest.
      *
      * @Param k the number of years to be returned.
      */
-
     public List<Integer> busiestYears(int k) {
-        Collection<Album> albums = dao.loadAll(Album.class);
-        ArrayList<Album> album = new ArrayList<>(albums);
-        ArrayList<Integer> listOfYears = new ArrayList<>();
-        ArrayList<Integer> yearCounter = new ArrayList<>();
-        for(int i = 0; i < album.size(); i++){
-            if(listOfYears.contains(album.get(i).getReleaseYear())){
-                int index = listOfYears.indexOf(album.get(i).getReleaseYear());
-                yearCounter.set(index, yearCounter.get(index) + 1);
-            }else{
-                listOfYears.add(album.get(i).getReleaseYear());
-                yearCounter.add(1);
-            }
-        }
-        if (listOfYears.size() <= k)
-            return listOfYears;
-
-        ArrayList<Integer> answer = new ArrayList<>();
-        for(int i = 0; i < k; i++){
-            int highestNumber = 0;
-            int idx = 0;
-            for(int j = 0; j<listOfYears.size();j++){
-                if(yearCounter.get(j) > highestNumber && !answer.contains(listOfYears.get(j))){
-                    highestNumber = yearCounter.get(j);
-                    idx = j;
-                }
-            }
-            answer.add(listOfYears.get(idx));
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        MiningView view = currentView();
+        if (view != null)
+            return view.busiestYears(k);
+        if (projecting) {
+            YearHistogram histogram = new YearHistogram();
+            for (int year : dao.projectInt(Album.class, "releaseYear").getValues())
+                histogram.add(year);
+            return histogram.topYears(k);
         }
-        return answer;
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.busiestYears(k));
+
+        Collection<Album> albums = dao.loadAll(Album.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.busiestYears(albums, k);
+        return YearHistogram.of(albums).topYears(k);
     }
+
     /**
      * Similarity is based on genre and musician of album. If artist is left empty it is ignored
+     * Matching albums are ranked by the musicians and instruments they share with the other
+     * matching albums, see AlbumIndex.mostSimilar.
      *
      * @Param k the number of albums to be returned.
      * @Param genre is the genre of music to be returned (cannot be blank)
      * @Param musician is the musician to be returned, if musician is blank it is ignored (search by genre only)
      */
-
     public List<Album> mostSimilarAlbums(int k, String genre, String featuredMusician) {
         if (k <= 0 || genre == null || genre.isEmpty())
             return Lists.newArrayList();
 
-        Collection<Album> albums = dao.loadAll(Album.class);
+        MiningView view = currentView();
+        if (view != null)
+            return view.mostSimilarAlbums(k, genre, featuredMusician);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.mostSimilarAlbums(k, genre, featuredMusician));
 
-        List<Album> filteredAlbums = Lists.newArrayList();
-        for (Album album : albums) {
-            boolean matchGenre = album.getGenre().equals(genre);
-            boolean featured =
-                    featuredMusician == null ||
-                    featuredMusician.isEmpty() ||
-                    album.getFeaturedMusicians().contains(new Musician(featuredMusician));
-            if (matchGenre && featured)
-                filteredAlbums.add(album);
-        }
-
-        // Case where size of all albums <= k
-        if (filteredAlbums.size() <= k)
-            return Lists.newArrayList(filteredAlbums);
-
-        // size of all albums > k
-        List<Album> answer = Lists.newArrayList();
-        Iterator<Album> it = filteredAlbums.iterator();
-        for (int i = 0; i < k; i++) {
-            Album toAdd = it.next();
-            if (toAdd.getGenre().equals(genre))
-                answer.add(toAdd);
-        }
-        return answer;
+        return AlbumIndex.of(loadGraph(dao, Album.class)).mostSimilar(k, genre, featuredMusician);
     }
 
     /**
      * Best K selling albums of all time
+     * Albums with the same sales are ranked by release year, record number and name.
      *
      * @Param k is the amount of albums to be returned
      */
     public List<Album> bestKSellingAlbums(int k) {
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        MiningView view = currentView();
+        if (view != null)
+            return view.bestKSellingAlbums(k);
+        if (projecting)
+            return topKByProjection(Album.class, "sales", k, Album::getSales, ALBUM_ORDER);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.bestKSellingAlbums(k));
+
         Collection<Album> albums = dao.loadAll(Album.class);
-        ArrayList<Album> answer = new ArrayList<>();
-        for(int i = 0; i < k; i++) {
-            int highestSales = 0;
-            for (Album album : albums) {
-                if (album.getSales() > highestSales  && !answer.contains(album)) {
-                    highestSales = album.getSales();
-                }
-            }
-            for(Album album : albums){
-                if(album.getSales() == highestSales){
-                    answer.add(album);
-                }
-            }
-        }
-        return answer;
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.bestKSellingAlbums(albums, k);
+        TopKSelector<Album> selector = new TopKSelector<>(k, ALBUM_ORDER);
+        for (Album album : albums)
+            selector.offer(album, album.getSales());
+        return selector.toList();
     }
 
     /**
      * Top k rated albums of all time (released by any musician)
+     * Albums with the same rating are ranked by release year, record number and name.
      *
      * @Param k is the amount of albums to be returned
      */
     public List<Album> topKRatedAlbums(int k) {
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        MiningView view = currentView();
+        if (view != null)
+            return view.topKRatedAlbums(k);
+        if (projecting)
+            return topKByProjection(Album.class, "rating", k, Album::getRating, ALBUM_ORDER);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.topKRatedAlbums(k));
+
         Collection<Album> albums = dao.loadAll(Album.class);
-        ArrayList<Album> answer = new ArrayList<>();
-        for(int i = 0; i < k; i++){
-            double highestRating = 0;
-            for (Album album : albums) {
-                if (album.getRating() > highestRating && !answer.contains(album)) {
-                    highestRating = album.getRating();
-                }
-            }
-            for (Album album : albums) {
-                if (album.getRating() == highestRating) {
-                    answer.add(album);
-                }
-            }
-        }
-        return answer;  
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.topKRatedAlbums(albums, k);
+        TopKSelector<Album> selector = new TopKSelector<>(k, ALBUM_ORDER);
+        for (Album album : albums)
+            selector.offer(album, album.getRating());
+        return selector.toList();
     }
 
     /**
      * Top k rated musicians of all time
+     * Musicians with the same rating are ranked by name.
      *
      * @Param k is the amount of musicians to be returned
      */
     public List<Musician> topKRatedMusicians(int k) {
-        Collection<Musician> musicians = dao.loadAll(Musician.class);
-        ArrayList<Musician> answer = new ArrayList<>();
-        for(int i = 0; i < k; i++){
-            int highestRating = 0;
-            for (Musician musician : musicians) {
-                if(musician.getRating() > highestRating && !answer.contains(musician)) {
-                    highestRating = musician.getRating();
-                }
-            }
-            for(Musician musician : musicians) {
-                if (musician.getRating() == highestRating) {
-                    answer.add(musician);
-                }
-            }
-        }
+        if (k <= 0)
+            return Lists.newArrayList();
 
-        return answer;
+        MiningView view = currentView();
+        if (view != null)
+            return view.topKRatedMusicians(k);
+        if (projecting)
+            return topKByProjection(Musician.class, "rating", k, Musician::getRating, MUSICIAN_ORDER);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.topKRatedMusicians(k));
+
+        Collection<Musician> musicians = dao.loadAll(Musician.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.topKRatedMusicians(musicians, k);
+        TopKSelector<Musician> selector = new TopKSelector<>(k, MUSICIAN_ORDER);
+        for (Musician musician : musicians)
+            selector.offer(musician, musician.getRating());
+        return selector.toList();
     }
 
     /**
      * This method returns an individual musicians top k rated albums of all time
+     * Albums with the same rating are ranked by release year, record number and name.
      *
      * @Param k is the amount of albums to be returned
      * @Param featuredMusician is the name of the musician participated in the album.
@@ -295,21 +600,16 @@ public class ECMMiner {
         if (k <= 0 || featuredMusician == null || featuredMusician.isEmpty())
             return Lists.newArrayList();
 
-        Collection<Album> albums = dao.loadAll(Album.class);
-        List<Album> filteredAlbums = Lists.newArrayList();
-        for (Album album : albums) {
-            if (album.getFeaturedMusicians().contains(new Musician(featuredMusician)))
-                filteredAlbums.add(album);
-        }
-        filteredAlbums.sort((a1, a2) -> {
-            if (a2.getRating() > a1.getRating())
-                return 1;
-            else
-                return -1;
-        });
-
-        if (filteredAlbums.size() <= k)
-            return filteredAlbums;
-        return filteredAlbums.subList(0, k);
+        MiningView view = currentView();
+        if (view != null)
+            return view.musiciansHighestRatedAlbums(featuredMusician, k);
+        if (streamingPageSize > 0)
+            return streamed(MiningQuery.musiciansHighestRatedAlbums(featuredMusician, k));
+
+        Collection<Album> albums = loadGraph(dao, Album.class);
+        ForkJoinAggregations forkJoin = parallel;
+        if (forkJoin != null)
+            return forkJoin.musiciansHighestRatedAlbums(albums, featuredMusician, k);
+        return MusicianAlbumIndex.of(albums).highestRated(featuredMusician, k);
     }
 }
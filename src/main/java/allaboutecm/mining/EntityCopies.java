@@ -0,0 +1,92 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Entity;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copies a graph of entities field by field, with the related entities replaced by their
+ * copies and the collections by immutable ones, so the copies share nothing mutable with
+ * the originals. Each entity is copied once however many times it is reached.
+ */
+final class EntityCopies {
+    private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private final Map<Entity, Entity> copies = new IdentityHashMap<>();
+
+    <T extends Entity> ImmutableList<T> of(Collection<T> entities) {
+        ImmutableList.Builder<T> copied = ImmutableList.builder();
+        for (T entity : entities)
+            copied.add(of(entity));
+        return copied.build();
+    }
+
+    @SuppressWarnings("unchecked")
+    <T extends Entity> T of(T entity) {
+        if (entity == null)
+            return null;
+        Entity copy = copies.get(entity);
+        if (copy != null)
+            return (T) copy;
+
+        copy = instantiate(entity.getClass());
+        // registered first, so cycles through the relationships end here
+        copies.put(entity, copy);
+        for (Field field : fields(entity.getClass())) {
+            try {
+                field.set(copy, copyValue(field, field.get(entity)));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot copy " + field, e);
+            }
+        }
+        return (T) copy;
+    }
+
+    private Object copyValue(Field field, Object value) {
+        if (value instanceof Entity)
+            return of((Entity) value);
+        if (!(value instanceof Collection))
+            return value;
+
+        List<Object> elements = Lists.newArrayList();
+        for (Object element : (Collection<?>) value)
+            elements.add(element instanceof Entity ? of((Entity) element) : element);
+        return Set.class.isAssignableFrom(field.getType()) ? ImmutableSet.copyOf(elements) : ImmutableList.copyOf(elements);
+    }
+
+    private static Entity instantiate(Class<? extends Entity> clazz) {
+        try {
+            Constructor<? extends Entity> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot copy a " + clazz.getSimpleName(), e);
+        }
+    }
+
+    private static List<Field> fields(Class<?> clazz) {
+        return FIELDS.computeIfAbsent(clazz, c -> {
+            List<Field> fields = Lists.newArrayList();
+            for (Class<?> declaring = c; declaring != null && declaring != Object.class; declaring = declaring.getSuperclass()) {
+                for (Field field : declaring.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic())
+                        continue;
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return ImmutableList.copyOf(fields);
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * The ECMMiner aggregations run on a ForkJoinPool.
+ *
+ * The loaded entities are split into chunks, each chunk is aggregated into its own partial
+ * result (top k selectors, year histograms, per-musician instrument sets) by one worker,
+ * and the partial results are merged pairwise on the way back up. Every partial result
+ * merges to the same answer whatever the split, so the answers are identical to the
+ * sequential ones.
+ */
+class ForkJoinAggregations {
+    static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    ForkJoinAggregations(ForkJoinPool pool, int chunkSize) {
+        if (pool == null)
+            throw new IllegalArgumentException("pool cannot be null");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive");
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    ForkJoinPool getPool() {
+        return pool;
+    }
+
+    List<Musician> mostProlificMusicians(Collection<Musician> musicians, int k, int startYear, int endYear) {
+        return reduce(musicians, () -> new TopKSelector<Musician>(k, ECMMiner.MUSICIAN_ORDER),
+                (selector, musician) -> selector.offer(musician, ECMMiner.countAlbums(musician, startYear, endYear)),
+                TopKSelector::merge).toList();
+    }
+
+    List<Musician> mostTalentedMusicians(Collection<MusicianInstrument> musicianInstruments, int k) {
+        // a musician can be linked in several chunks, so the instrument sets are merged first
+        Map<Musician, Set<MusicalInstrument>> instruments = reduce(musicianInstruments, Maps::newHashMap,
+                (partial, ins) -> {
+                    Set<MusicalInstrument> played = partial.computeIfAbsent(ins.getMusician(), m -> Sets.newHashSet());
+                    if (ins.getMusicalInstruments() != null)
+                        played.addAll(ins.getMusicalInstruments());
+                },
+                (left, right) -> {
+                    right.forEach((musician, played) ->
+                            left.computeIfAbsent(musician, m -> Sets.newHashSet()).addAll(played));
+                    return left;
+                });
+        return reduce(instruments.entrySet(), () -> new TopKSelector<Musician>(k, ECMMiner.MUSICIAN_ORDER),
+                (selector, entry) -> selector.offer(entry.getKey(), entry.getValue().size()),
+                TopKSelector::merge).toList();
+    }
+
+    List<Musician> mostSocialMusicians(Collection<Album> albums, int k) {
+        CollaborationGraph graph = CollaborationGraph.of(albums);
+        // the parallel degree computation runs in the pool it is started from
+        int[] degrees = pool.submit(graph::degrees).join();
+        List<Integer> ids = Lists.newArrayListWithCapacity(degrees.length);
+        for (int id = 0; id < degrees.length; id++)
+            ids.add(id);
+        return reduce(ids, () -> new TopKSelector<Musician>(k, ECMMiner.MUSICIAN_ORDER),
+                (selector, id) -> selector.offer(graph.musician(id), degrees[id]),
+                TopKSelector::merge).toList();
+    }
+
+    List<Integer> busiestYears(Collection<Album> albums, int k) {
+        return reduce(albums, YearHistogram::new,
+                (histogram, album) -> histogram.add(album.getReleaseYear()),
+                YearHistogram::merge).topYears(k);
+    }
+
+    List<Album> bestKSellingAlbums(Collection<Album> albums, int k) {
+        return reduce(albums, () -> new TopKSelector<Album>(k, ECMMiner.ALBUM_ORDER),
+                (selector, album) -> selector.offer(album, album.getSales()),
+                TopKSelector::merge).toList();
+    }
+
+    List<Album> topKRatedAlbums(Collection<Album> albums, int k) {
+        return reduce(albums, () -> new TopKSelector<Album>(k, ECMMiner.ALBUM_ORDER),
+                (selector, album) -> selector.offer(album, album.getRating()),
+                TopKSelector::merge).toList();
+    }
+
+    List<Musician> topKRatedMusicians(Collection<Musician> musicians, int k) {
+        return reduce(musicians, () -> new TopKSelector<Musician>(k, ECMMiner.MUSICIAN_ORDER),
+                (selector, musician) -> selector.offer(musician, musician.getRating()),
+                TopKSelector::merge).toList();
+    }
+
+    List<Album> musiciansHighestRatedAlbums(Collection<Album> albums, String featuredMusician, int k) {
+        return reduce(albums, () -> new TopKSelector<Album>(k, ECMMiner.ALBUM_ORDER),
+                (selector, album) -> {
+                    if (ECMMiner.isFeatured(album, featuredMusician))
+                        selector.offer(album, album.getRating());
+                },
+                TopKSelector::merge).toList();
+    }
+
+    private <T, A> A reduce(Collection<T> items, Supplier<A> partial, BiConsumer<A, ? super T> accumulate,
+                            BinaryOperator<A> merge) {
+        List<T> list = items instanceof List ? (List<T>) items : Lists.newArrayList(items);
+        return pool.invoke(new Chunk<>(list, 0, list.size(), chunkSize, partial, accumulate, merge));
+    }
+
+    /**
+     * Aggregates items [from, to) of the list, splitting in halves down to the chunk size.
+     */
+    private static class Chunk<T, A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<T> items;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final Supplier<A> partial;
+        private final BiConsumer<A, ? super T> accumulate;
+        private final BinaryOperator<A> merge;
+
+        Chunk(List<T> items, int from, int to, int chunkSize, Supplier<A> partial,
+              BiConsumer<A, ? super T> accumulate, BinaryOperator<A> merge) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.partial = partial;
+            this.accumulate = accumulate;
+            this.merge = merge;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from <= chunkSize) {
+                A result = partial.get();
+                for (int i = from; i < to; i++)
+                    accumulate.accept(result, items.get(i));
+                return result;
+            }
+
+            int middle = (from + to) >>> 1;
+            Chunk<T, A> left = new Chunk<>(items, from, middle, chunkSize, partial, accumulate, merge);
+            Chunk<T, A> right = new Chunk<>(items, middle, to, chunkSize, partial, accumulate, merge);
+            left.fork();
+            A rightResult = right.compute();
+            return merge.apply(left.join(), rightResult);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Items ranked from the highest score, items with the same score ranked by a comparator.
+ *
+ * The score each item was put with is remembered, so an item can be moved or removed in
+ * O(log n) after it has changed, and the k best items are read in O(k).
+ */
+public class Leaderboard<T> {
+    private final Map<T, Double> scores = Maps.newHashMap();
+    private final TreeSet<T> ranking;
+
+    public Leaderboard(Comparator<? super T> tieBreaker) {
+        if (tieBreaker == null)
+            throw new IllegalArgumentException("tieBreaker cannot be null");
+        this.ranking = new TreeSet<>((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : tieBreaker.compare(a, b);
+        });
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    /**
+     * Ranks the item by the score, replacing the entry of an equal item put before.
+     */
+    public void put(T item, double score) {
+        remove(item);
+        scores.put(item, score);
+        ranking.add(item);
+    }
+
+    public void remove(T item) {
+        // the ranking must be searched with the old score before it is forgotten
+        if (scores.containsKey(item)) {
+            ranking.remove(item);
+            scores.remove(item);
+        }
+    }
+
+    /**
+     * Returns the k highest ranked items, highest first.
+     */
+    public List<T> top(int k) {
+        List<T> answer = Lists.newArrayListWithCapacity(Math.min(Math.max(k, 0), scores.size()));
+        Iterator<T> it = ranking.iterator();
+        while (answer.size() < k && it.hasNext())
+            answer.add(it.next());
+        return answer;
+    }
+}
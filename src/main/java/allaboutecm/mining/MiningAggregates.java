@@ -0,0 +1,408 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.ChangeListener;
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multiset;
+import com.google.common.collect.SetMultimap;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The aggregates the mining queries read, maintained from the change notifications of a
+ * DAO so that a write costs in proportion to the entity written rather than to the store.
+ *
+ * Musicians are identified by their natural keys, as in Neo4jDAO.createOrUpdate, albums
+ * by their ids, as the release year is part of their key, and the MusicianInstrument links,
+ * which have none, by their ids too. What was counted for an entity
+ * is remembered, so saving an entity again first takes back its previous contribution.
+ * Queries hold a read lock and writes a write lock, so queries run concurrently and never
+ * see a half-applied write.
+ */
+public class MiningAggregates implements ChangeListener, MiningView {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // set when entities were deleted without being seen, the aggregates must then be rebuilt
+    private volatile boolean stale;
+
+    // per musician: release years of their albums, and their rating
+    private final ReleaseYearIndex releaseYears = new ReleaseYearIndex();
+    private final Leaderboard<Musician> musiciansByRating = new Leaderboard<>(ECMMiner.MUSICIAN_ORDER);
+    // per musician the release year of each of their albums, by album key, and the musicians
+    // of each album, so that saving or deleting an album updates the years of its musicians
+    private final Map<Musician, Map<Object, Integer>> albumYears = Maps.newHashMap();
+    private final SetMultimap<Object, Musician> musiciansOfAlbum = HashMultimap.create();
+
+    // per album
+    private final YearHistogram yearHistogram = new YearHistogram();
+    private final AlbumIndex albumIndex = new AlbumIndex();
+    private final MusicianAlbumIndex musicianAlbumIndex = new MusicianAlbumIndex();
+    private final Leaderboard<Album> albumsBySales = new Leaderboard<>(ECMMiner.ALBUM_ORDER);
+    private final Leaderboard<Album> albumsByRating = new Leaderboard<>(ECMMiner.ALBUM_ORDER);
+    // the album, release year and distinct musicians each album was counted under, by album key
+    private final Map<Object, IndexedAlbum> albums = Maps.newHashMap();
+    // number of albums each musician is featured on, and shared with each collaborator
+    private final Multiset<Musician> featured = HashMultiset.create();
+    private final Map<Musician, Multiset<Musician>> collaborators = Maps.newHashMap();
+
+    // per MusicianInstrument link, a frozen copy of what was counted for it, keyed by its id,
+    // or by the link itself while it has none
+    private final Map<Object, MusicianInstrument> links = Maps.newHashMap();
+    // number of links of every musician, and of links to each of their instruments
+    private final Multiset<Musician> linked = HashMultiset.create();
+    private final Map<Musician, Multiset<MusicalInstrument>> instruments = Maps.newHashMap();
+
+    /**
+     * Creates aggregates over everything in the DAO and keeps them up to date with its writes.
+     */
+    public static MiningAggregates attach(DAO dao) {
+        MiningAggregates aggregates = new MiningAggregates();
+        // registered before loading so no write is missed, a write that is also in the
+        // loaded entities is applied twice, which leaves the aggregates unchanged
+        dao.addChangeListener(aggregates);
+        Lock writeLock = aggregates.lock.writeLock();
+        writeLock.lock();
+        try {
+            for (Musician musician : ECMMiner.loadGraph(dao, Musician.class))
+                aggregates.saveMusician(musician);
+            for (Album album : ECMMiner.loadGraph(dao, Album.class))
+                aggregates.saveAlbum(album);
+            for (MusicianInstrument musicianInstrument : ECMMiner.loadGraph(dao, MusicianInstrument.class))
+                aggregates.saveLink(musicianInstrument);
+        } finally {
+            writeLock.unlock();
+        }
+        return aggregates;
+    }
+
+    @Override
+    public void onSave(Entity entity) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (entity instanceof Musician)
+                saveMusician((Musician) entity);
+            else if (entity instanceof Album)
+                saveAlbum((Album) entity);
+            else if (entity instanceof MusicianInstrument)
+                saveLink((MusicianInstrument) entity);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * The deleted entities are not known, so the aggregates can only be marked stale.
+     */
+    @Override
+    public void onDeleteAll(Class<? extends Entity> type) {
+        stale = true;
+    }
+
+    /**
+     * Whether a bulk delete happened since the aggregates were built, so that they no longer
+     * follow the store.
+     */
+    public boolean isStale() {
+        return stale;
+    }
+
+    @Override
+    public void onDelete(Entity entity) {
+        Lock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            if (entity instanceof Musician)
+                deleteMusician((Musician) entity);
+            else if (entity instanceof Album)
+                detachAlbum((Album) entity);
+            else if (entity instanceof MusicianInstrument)
+                deleteLink((MusicianInstrument) entity);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void saveMusician(Musician musician) {
+        forgetAlbumsOf(musician);
+        Map<Object, Integer> years = Maps.newHashMap();
+        if (musician.getAlbums() != null) {
+            for (Album album : musician.getAlbums()) {
+                // the year the album was last saved with, when it was
+                IndexedAlbum indexed = albums.get(key(album));
+                years.put(key(album), indexed != null ? indexed.releaseYear : album.getReleaseYear());
+                musiciansOfAlbum.put(key(album), musician);
+            }
+        }
+        albumYears.put(musician, years);
+        releaseYears.put(musician, years.values());
+        musiciansByRating.put(musician, musician.getRating());
+    }
+
+    private void forgetAlbumsOf(Musician musician) {
+        Map<Object, Integer> years = albumYears.remove(musician);
+        if (years != null) {
+            for (Object album : years.keySet())
+                musiciansOfAlbum.remove(album, musician);
+        }
+    }
+
+    private void deleteMusician(Musician musician) {
+        releaseYears.remove(musician);
+        musiciansByRating.remove(musician);
+        forgetAlbumsOf(musician);
+        // the albums that featured the musician no longer do
+        albumIndex.removeMusician(musician.getName());
+        musicianAlbumIndex.removeMusician(musician.getName());
+        for (IndexedAlbum indexed : albums.values())
+            indexed.musicians.remove(musician);
+        links.values().removeIf(link -> link.getMusician().equals(musician));
+        linked.setCount(musician, 0);
+        instruments.remove(musician);
+        featured.setCount(musician, 0);
+        Multiset<Musician> others = collaborators.remove(musician);
+        if (others != null) {
+            for (Musician other : others.elementSet()) {
+                Multiset<Musician> ofOther = collaborators.get(other);
+                if (ofOther != null)
+                    ofOther.setCount(musician, 0);
+            }
+        }
+    }
+
+    private void saveAlbum(Album album) {
+        deleteAlbum(album);
+
+        List<Musician> musicians = Lists.newArrayList();
+        if (album.getFeaturedMusicians() != null) {
+            for (Musician musician : album.getFeaturedMusicians()) {
+                if (!musicians.contains(musician))
+                    musicians.add(musician);
+            }
+        }
+        albums.put(key(album), new IndexedAlbum(album, album.getReleaseYear(), musicians));
+        yearHistogram.add(album.getReleaseYear());
+        albumIndex.add(album);
+        musicianAlbumIndex.add(album);
+        albumsBySales.put(album, album.getSales());
+        albumsByRating.put(album, album.getRating());
+        for (Musician musician : musicians) {
+            featured.add(musician);
+            Multiset<Musician> others = collaborators.computeIfAbsent(musician, m -> HashMultiset.create());
+            for (Musician other : musicians) {
+                if (!other.equals(musician))
+                    others.add(other);
+            }
+        }
+        for (Musician musician : musiciansOfAlbum.get(key(album)))
+            updateAlbumYear(musician, key(album), album.getReleaseYear());
+    }
+
+    /**
+     * Deletes the album, which the musicians it was an album of no longer have.
+     */
+    private void detachAlbum(Album album) {
+        deleteAlbum(album);
+        for (Musician musician : musiciansOfAlbum.removeAll(key(album)))
+            updateAlbumYear(musician, key(album), null);
+    }
+
+    private void updateAlbumYear(Musician musician, Object album, Integer releaseYear) {
+        Map<Object, Integer> years = albumYears.get(musician);
+        if (releaseYear == null)
+            years.remove(album);
+        else
+            years.put(album, releaseYear);
+        releaseYears.put(musician, years.values());
+    }
+
+    /**
+     * Takes back what was counted for the album, as it was when it was counted.
+     */
+    private void deleteAlbum(Album album) {
+        IndexedAlbum indexed = albums.remove(key(album));
+        if (indexed == null)
+            return;
+
+        yearHistogram.remove(indexed.releaseYear);
+        albumIndex.remove(indexed.album);
+        musicianAlbumIndex.remove(indexed.album);
+        albumsBySales.remove(indexed.album);
+        albumsByRating.remove(indexed.album);
+        for (Musician musician : indexed.musicians) {
+            featured.remove(musician);
+            Multiset<Musician> others = collaborators.get(musician);
+            if (others == null)
+                continue;
+            for (Musician other : indexed.musicians) {
+                if (!other.equals(musician))
+                    others.remove(other);
+            }
+            if (!featured.contains(musician))
+                collaborators.remove(musician);
+        }
+    }
+
+    private void saveLink(MusicianInstrument musicianInstrument) {
+        // a copy, the instruments of the saved link may be changed afterwards
+        MusicianInstrument frozen = new MusicianInstrument(musicianInstrument.getMusician(),
+                ImmutableSet.copyOf(musicianInstrument.getMusicalInstruments()));
+        MusicianInstrument previous = links.put(key(musicianInstrument), frozen);
+        if (previous != null)
+            uncount(previous);
+        linked.add(frozen.getMusician());
+        instruments.computeIfAbsent(frozen.getMusician(), m -> HashMultiset.create())
+                .addAll(frozen.getMusicalInstruments());
+    }
+
+    private void deleteLink(MusicianInstrument musicianInstrument) {
+        MusicianInstrument previous = links.remove(key(musicianInstrument));
+        if (previous != null)
+            uncount(previous);
+    }
+
+    private void uncount(MusicianInstrument link) {
+        Musician musician = link.getMusician();
+        Multiset<MusicalInstrument> played = instruments.get(musician);
+        for (MusicalInstrument instrument : link.getMusicalInstruments())
+            played.remove(instrument);
+        if (linked.remove(musician, 1) == 1)
+            instruments.remove(musician);
+    }
+
+    /**
+     * The id of the entity, or the entity itself while it has none.
+     */
+    private static Object key(Entity entity) {
+        return entity.getId() != null ? entity.getId() : entity;
+    }
+
+    @Override
+    public List<Musician> mostProlificMusicians(int k, int startYear, int endYear) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return releaseYears.mostProlific(k, startYear, endYear);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Musician> mostTalentedMusicians(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+            for (Map.Entry<Musician, Multiset<MusicalInstrument>> entry : instruments.entrySet())
+                selector.offer(entry.getKey(), entry.getValue().elementSet().size());
+            return selector.toList();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Musician> mostSocialMusicians(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+            for (Map.Entry<Musician, Multiset<Musician>> entry : collaborators.entrySet())
+                selector.offer(entry.getKey(), entry.getValue().elementSet().size());
+            return selector.toList();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Integer> busiestYears(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return yearHistogram.topYears(k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Album> mostSimilarAlbums(int k, String genre, String featuredMusician) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return albumIndex.mostSimilar(k, genre, featuredMusician);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Album> bestKSellingAlbums(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return albumsBySales.top(k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Album> topKRatedAlbums(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return albumsByRating.top(k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Musician> topKRatedMusicians(int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return musiciansByRating.top(k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Album> musiciansHighestRatedAlbums(String featuredMusician, int k) {
+        Lock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return musicianAlbumIndex.highestRated(featuredMusician, k);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private static class IndexedAlbum {
+        private final Album album;
+        private final int releaseYear;
+        private final List<Musician> musicians;
+
+        IndexedAlbum(Album album, int releaseYear, List<Musician> musicians) {
+            this.album = album;
+            this.releaseYear = releaseYear;
+            this.musicians = musicians;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * One ECMMiner query with its arguments, to be evaluated with others in ECMMiner.runBatch.
+ *
+ * The arguments are validated when the query is created, with the same rules as the
+ * ECMMiner method of the same name. Every query folds the entities it reads into its own
+ * accumulator, so any number of queries can share one scan of each collection.
+ *
+ * @param <R> the type of the answer
+ */
+public final class MiningQuery<R> {
+
+    /**
+     * The collections a query reads.
+     */
+    enum Source {
+        ALBUMS,
+        MUSICIANS,
+        MUSICIAN_INSTRUMENTS
+    }
+
+    /**
+     * Folds the entities of one scan into an answer. Each query gets a new accumulator per batch.
+     */
+    interface Accumulator<R> {
+        default void album(Album album) {
+        }
+
+        default void musician(Musician musician) {
+        }
+
+        default void musicianInstrument(MusicianInstrument musicianInstrument) {
+        }
+
+        R result();
+    }
+
+    private final String name;
+    private final EnumSet<Source> sources;
+    private final Supplier<Accumulator<R>> accumulator;
+    private final Function<MiningView, R> fromView;
+
+    private MiningQuery(String name, EnumSet<Source> sources, Supplier<Accumulator<R>> accumulator,
+                        Function<MiningView, R> fromView) {
+        this.name = name;
+        this.sources = sources;
+        this.accumulator = accumulator;
+        this.fromView = fromView;
+    }
+
+    public static MiningQuery<List<Musician>> mostProlificMusicians(int k, int startYear, int endYear) {
+        if (k <= 0)
+            throw new IllegalArgumentException("The input number of k can not less than or equal to zero");
+        if (endYear != -1 && startYear > endYear)
+            throw new IllegalArgumentException("The end year should greater that start year");
+
+        return new MiningQuery<>("mostProlificMusicians", EnumSet.of(Source.MUSICIANS),
+                () -> new Accumulator<List<Musician>>() {
+                    private final TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+
+                    @Override
+                    public void musician(Musician musician) {
+                        selector.offer(musician, ECMMiner.countAlbums(musician, startYear, endYear));
+                    }
+
+                    @Override
+                    public List<Musician> result() {
+                        return selector.toList();
+                    }
+                },
+                view -> view.mostProlificMusicians(k, startYear, endYear));
+    }
+
+    public static MiningQuery<List<Musician>> mostTalentedMusicians(int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("k cannot be smaller than one");
+
+        return new MiningQuery<>("mostTalentedMusicians", EnumSet.of(Source.MUSICIAN_INSTRUMENTS),
+                () -> new Accumulator<List<Musician>>() {
+                    private final List<MusicianInstrument> links = Lists.newArrayList();
+
+                    @Override
+                    public void musicianInstrument(MusicianInstrument musicianInstrument) {
+                        links.add(musicianInstrument);
+                    }
+
+                    @Override
+                    public List<Musician> result() {
+                        TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+                        for (Map.Entry<Musician, Set<MusicalInstrument>> entry : ECMMiner.instrumentsByMusician(links).entrySet())
+                            selector.offer(entry.getKey(), entry.getValue().size());
+                        return selector.toList();
+                    }
+                },
+                view -> view.mostTalentedMusicians(k));
+    }
+
+    public static MiningQuery<List<Musician>> mostSocialMusicians(int k) {
+        if (k <= 0)
+            throw new IllegalArgumentException("The input number of k can not less than or equal to zero");
+
+        return new MiningQuery<>("mostSocialMusicians", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Musician>>() {
+                    private final List<Album> albums = Lists.newArrayList();
+
+                    @Override
+                    public void album(Album album) {
+                        albums.add(album);
+                    }
+
+                    @Override
+                    public List<Musician> result() {
+                        CollaborationGraph graph = CollaborationGraph.of(albums);
+                        int[] degrees = graph.degrees();
+                        TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+                        for (int id = 0; id < degrees.length; id++)
+                            selector.offer(graph.musician(id), degrees[id]);
+                        return selector.toList();
+                    }
+                },
+                view -> view.mostSocialMusicians(k));
+    }
+
+    public static MiningQuery<List<Integer>> busiestYears(int k) {
+        if (k <= 0)
+            return empty("busiestYears");
+
+        return new MiningQuery<>("busiestYears", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Integer>>() {
+                    private final YearHistogram histogram = new YearHistogram();
+
+                    @Override
+                    public void album(Album album) {
+                        histogram.add(album.getReleaseYear());
+                    }
+
+                    @Override
+                    public List<Integer> result() {
+                        return histogram.topYears(k);
+                    }
+                },
+                view -> view.busiestYears(k));
+    }
+
+    public static MiningQuery<List<Album>> mostSimilarAlbums(int k, String genre, String featuredMusician) {
+        if (k <= 0 || genre == null || genre.isEmpty())
+            return empty("mostSimilarAlbums");
+
+        return new MiningQuery<>("mostSimilarAlbums", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Album>>() {
+                    // only albums of the genre can match, and similarity is counted among the matches
+                    private final AlbumIndex index = new AlbumIndex();
+
+                    @Override
+                    public void album(Album album) {
+                        if (genre.equals(album.getGenre()))
+                            index.add(album);
+                    }
+
+                    @Override
+                    public List<Album> result() {
+                        return index.mostSimilar(k, genre, featuredMusician);
+                    }
+                },
+                view -> view.mostSimilarAlbums(k, genre, featuredMusician));
+    }
+
+    public static MiningQuery<List<Album>> bestKSellingAlbums(int k) {
+        if (k <= 0)
+            return empty("bestKSellingAlbums");
+
+        return new MiningQuery<>("bestKSellingAlbums", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Album>>() {
+                    private final TopKSelector<Album> selector = new TopKSelector<>(k, ECMMiner.ALBUM_ORDER);
+
+                    @Override
+                    public void album(Album album) {
+                        selector.offer(album, album.getSales());
+                    }
+
+                    @Override
+                    public List<Album> result() {
+                        return selector.toList();
+                    }
+                },
+                view -> view.bestKSellingAlbums(k));
+    }
+
+    public static MiningQuery<List<Album>> topKRatedAlbums(int k) {
+        if (k <= 0)
+            return empty("topKRatedAlbums");
+
+        return new MiningQuery<>("topKRatedAlbums", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Album>>() {
+                    private final TopKSelector<Album> selector = new TopKSelector<>(k, ECMMiner.ALBUM_ORDER);
+
+                    @Override
+                    public void album(Album album) {
+                        selector.offer(album, album.getRating());
+                    }
+
+                    @Override
+                    public List<Album> result() {
+                        return selector.toList();
+                    }
+                },
+                view -> view.topKRatedAlbums(k));
+    }
+
+    public static MiningQuery<List<Musician>> topKRatedMusicians(int k) {
+        if (k <= 0)
+            return empty("topKRatedMusicians");
+
+        return new MiningQuery<>("topKRatedMusicians", EnumSet.of(Source.MUSICIANS),
+                () -> new Accumulator<List<Musician>>() {
+                    private final TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+
+                    @Override
+                    public void musician(Musician musician) {
+                        selector.offer(musician, musician.getRating());
+                    }
+
+                    @Override
+                    public List<Musician> result() {
+                        return selector.toList();
+                    }
+                },
+                view -> view.topKRatedMusicians(k));
+    }
+
+    public static MiningQuery<List<Album>> musiciansHighestRatedAlbums(String featuredMusician, int k) {
+        if (k <= 0 || featuredMusician == null || featuredMusician.isEmpty())
+            return empty("musiciansHighestRatedAlbums");
+
+        return new MiningQuery<>("musiciansHighestRatedAlbums", EnumSet.of(Source.ALBUMS),
+                () -> new Accumulator<List<Album>>() {
+                    private final TopKSelector<Album> selector = new TopKSelector<>(k, ECMMiner.ALBUM_ORDER);
+
+                    @Override
+                    public void album(Album album) {
+                        if (ECMMiner.isFeatured(album, featuredMusician))
+                            selector.offer(album, album.getRating());
+                    }
+
+                    @Override
+                    public List<Album> result() {
+                        return selector.toList();
+                    }
+                },
+                view -> view.musiciansHighestRatedAlbums(featuredMusician, k));
+    }
+
+    /**
+     * A query whose arguments make the answer empty without reading anything.
+     */
+    private static <T> MiningQuery<List<T>> empty(String name) {
+        return new MiningQuery<>(name, EnumSet.noneOf(Source.class),
+                () -> Lists::newArrayList,
+                view -> Lists.newArrayList());
+    }
+
+    Set<Source> getSources() {
+        return sources;
+    }
+
+    Accumulator<R> newAccumulator() {
+        return accumulator.get();
+    }
+
+    R answer(MiningView view) {
+        return fromView.apply(view);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,31 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+/**
+ * The answers of a batch of MiningQuery, one per query.
+ */
+public class MiningResults {
+    // queries have no equals, each query object is its own key
+    private final Map<MiningQuery<?>, Object> answers = Maps.newIdentityHashMap();
+
+    <R> void put(MiningQuery<R> query, R answer) {
+        answers.put(query, answer);
+    }
+
+    public int size() {
+        return answers.size();
+    }
+
+    /**
+     * Returns the answer of a query of the batch.
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R get(MiningQuery<R> query) {
+        if (!answers.containsKey(query))
+            throw new IllegalArgumentException("The query " + query + " was not part of the batch");
+        return (R) answers.get(query);
+    }
+}
@@ -0,0 +1,171 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only, in-memory copy of the albums, musicians and MusicianInstrument links loaded
+ * from a DAO, together with every index the mining queries read.
+ *
+ * A snapshot is fully built before it is handed out and never changes afterwards, so any
+ * number of threads can query it without locking. The indexes are private and are only
+ * read once the snapshot has been built.
+ *
+ * The entities are copied when the snapshot is built, with their relationships leading to
+ * the other copies and their collections immutable, so changes made to the DAO's entities
+ * afterwards are not seen until the next snapshot, and the answers always carry the values
+ * they were ranked on. The copies are for reading only.
+ */
+public class MiningSnapshot implements MiningView {
+    private final ImmutableList<Album> albums;
+    private final ImmutableList<Musician> musicians;
+    private final ImmutableList<MusicianInstrument> musicianInstruments;
+
+    private final YearHistogram yearHistogram;
+    private final AlbumIndex albumIndex;
+    private final MusicianAlbumIndex musicianAlbumIndex;
+    private final ReleaseYearIndex releaseYearIndex;
+    private final CollaborationGraph collaborationGraph;
+    private final ImmutableMap<Musician, Integer> instrumentCounts;
+
+    // leaderboards, fully sorted so a top k query is a prefix read
+    private final ImmutableList<Album> albumsBySales;
+    private final ImmutableList<Album> albumsByRating;
+    private final ImmutableList<Musician> musiciansByRating;
+
+    private final long createdAt;
+
+    public MiningSnapshot(Collection<Album> albums, Collection<Musician> musicians,
+                          Collection<MusicianInstrument> musicianInstruments) {
+        EntityCopies copies = new EntityCopies();
+        this.albums = copies.of(albums);
+        this.musicians = copies.of(musicians);
+        this.musicianInstruments = copies.of(musicianInstruments);
+
+        this.yearHistogram = YearHistogram.of(this.albums);
+        this.albumIndex = AlbumIndex.of(this.albums);
+        this.musicianAlbumIndex = MusicianAlbumIndex.of(this.albums);
+        this.releaseYearIndex = ReleaseYearIndex.of(this.musicians);
+        this.collaborationGraph = CollaborationGraph.of(this.albums);
+        // computed now so that nothing is written after the snapshot is published
+        this.collaborationGraph.degrees();
+
+        ImmutableMap.Builder<Musician, Integer> counts = ImmutableMap.builder();
+        for (Map.Entry<Musician, Set<MusicalInstrument>> entry :
+                ECMMiner.instrumentsByMusician(this.musicianInstruments).entrySet())
+            counts.put(entry.getKey(), entry.getValue().size());
+        this.instrumentCounts = counts.build();
+
+        this.albumsBySales = sorted(this.albums,
+                Comparator.comparingInt(Album::getSales).reversed().thenComparing(ECMMiner.ALBUM_ORDER));
+        this.albumsByRating = sorted(this.albums,
+                Comparator.comparingDouble(Album::getRating).reversed().thenComparing(ECMMiner.ALBUM_ORDER));
+        this.musiciansByRating = sorted(this.musicians,
+                Comparator.comparingInt(Musician::getRating).reversed().thenComparing(ECMMiner.MUSICIAN_ORDER));
+
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Loads everything a snapshot holds from the DAO, with the relationships, and builds it.
+     */
+    public static MiningSnapshot load(DAO dao) {
+        return new MiningSnapshot(
+                ECMMiner.loadGraph(dao, Album.class),
+                ECMMiner.loadGraph(dao, Musician.class),
+                ECMMiner.loadGraph(dao, MusicianInstrument.class));
+    }
+
+    public List<Album> getAlbums() {
+        return albums;
+    }
+
+    public List<Musician> getMusicians() {
+        return musicians;
+    }
+
+    public List<MusicianInstrument> getMusicianInstruments() {
+        return musicianInstruments;
+    }
+
+    /**
+     * The time the snapshot was built, in milliseconds since the epoch.
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public List<Musician> mostProlificMusicians(int k, int startYear, int endYear) {
+        return releaseYearIndex.mostProlific(k, startYear, endYear);
+    }
+
+    @Override
+    public List<Musician> mostTalentedMusicians(int k) {
+        TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+        for (Map.Entry<Musician, Integer> entry : instrumentCounts.entrySet())
+            selector.offer(entry.getKey(), entry.getValue());
+        return selector.toList();
+    }
+
+    @Override
+    public List<Musician> mostSocialMusicians(int k) {
+        int[] degrees = collaborationGraph.degrees();
+        TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+        for (int id = 0; id < degrees.length; id++)
+            selector.offer(collaborationGraph.musician(id), degrees[id]);
+        return selector.toList();
+    }
+
+    @Override
+    public List<Integer> busiestYears(int k) {
+        return yearHistogram.topYears(k);
+    }
+
+    @Override
+    public List<Album> mostSimilarAlbums(int k, String genre, String featuredMusician) {
+        return albumIndex.mostSimilar(k, genre, featuredMusician);
+    }
+
+    @Override
+    public List<Album> bestKSellingAlbums(int k) {
+        return prefix(albumsBySales, k);
+    }
+
+    @Override
+    public List<Album> topKRatedAlbums(int k) {
+        return prefix(albumsByRating, k);
+    }
+
+    @Override
+    public List<Musician> topKRatedMusicians(int k) {
+        return prefix(musiciansByRating, k);
+    }
+
+    @Override
+    public List<Album> musiciansHighestRatedAlbums(String featuredMusician, int k) {
+        return musicianAlbumIndex.highestRated(featuredMusician, k);
+    }
+
+    private static <T> ImmutableList<T> sorted(List<T> items, Comparator<? super T> order) {
+        List<T> copy = Lists.newArrayList(items);
+        copy.sort(order);
+        return ImmutableList.copyOf(copy);
+    }
+
+    private static <T> List<T> prefix(List<T> items, int k) {
+        return Lists.newArrayList(items.subList(0, Math.min(k, items.size())));
+    }
+}
@@ -0,0 +1,32 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+
+import java.util.List;
+
+/**
+ * State held in memory that can answer the ECMMiner queries without going to the DAO.
+ *
+ * The arguments have already been validated by ECMMiner, and the answers are ranked the
+ * same way as there.
+ */
+interface MiningView {
+    List<Musician> mostProlificMusicians(int k, int startYear, int endYear);
+
+    List<Musician> mostTalentedMusicians(int k);
+
+    List<Musician> mostSocialMusicians(int k);
+
+    List<Integer> busiestYears(int k);
+
+    List<Album> mostSimilarAlbums(int k, String genre, String featuredMusician);
+
+    List<Album> bestKSellingAlbums(int k);
+
+    List<Album> topKRatedAlbums(int k);
+
+    List<Musician> topKRatedMusicians(int k);
+
+    List<Album> musiciansHighestRatedAlbums(String featuredMusician, int k);
+}
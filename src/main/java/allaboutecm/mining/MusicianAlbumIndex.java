@@ -0,0 +1,151 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The albums featuring each musician, kept ordered from the highest rated.
+ *
+ * Albums with the same rating are ordered by release year, record number and name, so
+ * the order is total and does not depend on insertion order. Reading the k highest rated
+ * albums of a musician is a prefix read, and saving an album moves it to its new position
+ * in the lists of its musicians.
+ */
+public class MusicianAlbumIndex {
+    private final Map<String, RatedAlbums> byMusician = Maps.newHashMap();
+    // the rating and musicians each album was indexed under, albums may have changed since
+    private final Map<Album, Indexed> indexed = Maps.newHashMap();
+
+    public static MusicianAlbumIndex of(Iterable<Album> albums) {
+        MusicianAlbumIndex index = new MusicianAlbumIndex();
+        for (Album album : albums)
+            index.add(album);
+        return index;
+    }
+
+    /**
+     * Indexes an album, replacing the entry of an equal album that was indexed before.
+     */
+    public void add(Album album) {
+        remove(album);
+        if (album.getFeaturedMusicians() == null)
+            return;
+
+        List<String> names = Lists.newArrayList();
+        for (Musician musician : album.getFeaturedMusicians()) {
+            if (names.contains(musician.getName()))
+                continue;
+            names.add(musician.getName());
+            byMusician.computeIfAbsent(musician.getName(), m -> new RatedAlbums()).insert(album, album.getRating());
+        }
+        indexed.put(album, new Indexed(album.getRating(), names));
+    }
+
+    public void remove(Album album) {
+        Indexed entry = indexed.remove(album);
+        if (entry == null)
+            return;
+        for (String name : entry.musicianNames) {
+            RatedAlbums albums = byMusician.get(name);
+            albums.delete(album, entry.rating);
+            if (albums.size == 0)
+                byMusician.remove(name);
+        }
+    }
+
+    /**
+     * Removes the musician from the albums it was indexed with.
+     */
+    public void removeMusician(String musicianName) {
+        RatedAlbums albums = byMusician.remove(musicianName);
+        if (albums == null)
+            return;
+        for (int i = 0; i < albums.size; i++)
+            indexed.get(albums.albums[i]).musicianNames.remove(musicianName);
+    }
+
+    /**
+     * Returns the k highest rated albums featuring the musician, highest first.
+     */
+    public List<Album> highestRated(String musicianName, int k) {
+        RatedAlbums albums = byMusician.get(musicianName);
+        if (k <= 0 || albums == null)
+            return Lists.newArrayList();
+
+        int size = Math.min(k, albums.size);
+        List<Album> answer = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++)
+            answer.add(albums.albums[i]);
+        return answer;
+    }
+
+    private static class Indexed {
+        private final double rating;
+        private final List<String> musicianNames;
+
+        Indexed(double rating, List<String> musicianNames) {
+            this.rating = rating;
+            this.musicianNames = musicianNames;
+        }
+    }
+
+    /**
+     * Albums with their ratings at indexing time, sorted from the highest rated.
+     */
+    private static class RatedAlbums {
+        private Album[] albums = new Album[4];
+        private double[] ratings = new double[4];
+        private int size;
+
+        void insert(Album album, double rating) {
+            if (size == albums.length) {
+                albums = Arrays.copyOf(albums, size * 2);
+                ratings = Arrays.copyOf(ratings, size * 2);
+            }
+            int i = position(album, rating);
+            System.arraycopy(albums, i, albums, i + 1, size - i);
+            System.arraycopy(ratings, i, ratings, i + 1, size - i);
+            albums[i] = album;
+            ratings[i] = rating;
+            size++;
+        }
+
+        void delete(Album album, double rating) {
+            int i = position(album, rating);
+            if (i == size || !albums[i].equals(album))
+                return;
+            System.arraycopy(albums, i + 1, albums, i, size - i - 1);
+            System.arraycopy(ratings, i + 1, ratings, i, size - i - 1);
+            size--;
+            albums[size] = null;
+        }
+
+        /**
+         * Binary search for the first position not ranked before (rating, album).
+         */
+        private int position(Album album, double rating) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (isBefore(ratings[middle], albums[middle], rating, album))
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+
+        private static boolean isBefore(double ratingA, Album a, double ratingB, Album b) {
+            if (ratingA != ratingB)
+                return ratingA > ratingB;
+            return ECMMiner.ALBUM_ORDER.compare(a, b) < 0;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An ECMMiner that can push its queries down to Neo4j.
+ *
+ * In PUSHDOWN mode every query is compiled to a Cypher aggregation ending in
+ * ORDER BY ... LIMIT k, so only the k result rows are hydrated. In IN_JVM mode the
+ * queries are answered by ECMMiner from the entities loaded through the DAO, which
+ * makes it possible to compare the two paths on the same store. Once a MiningSnapshot
+ * is published or aggregates are attached the queries are answered from them in either mode.
+ * A batch of queries given to runBatch is always evaluated in one scan in the JVM.
+ *
+ * Ties are ranked the same way as in ECMMiner. The entities a pushdown query returns are
+ * loaded with the relationships ECMMiner prefetches for their class, the albums of musicians
+ * and the musicians and instruments of albums, as the in-JVM path loads them. The pushdown queries run through the DAO,
+ * on a session of its pool, so the miner can be shared between threads when the DAO can.
+ */
+public class Neo4jECMMiner extends ECMMiner {
+
+    /**
+     * Where the queries are answered. Both modes return entities with the same relationships loaded.
+     */
+    public enum Mode {
+        IN_JVM,
+        PUSHDOWN
+    }
+
+    private static final String ALBUM_ORDER = "a.releaseYear, a.recordNumber, a.albumName";
+
+    private static final String MOST_PROLIFIC_MUSICIANS =
+            "MATCH (m:Musician) " +
+            "OPTIONAL MATCH (m)-[:albums]->(a:Album) " +
+            "WHERE ($startYear = -1 OR a.releaseYear >= $startYear) AND ($endYear = -1 OR a.releaseYear <= $endYear) " +
+            "WITH m, count(a) AS albums " +
+            "RETURN m ORDER BY albums DESC, m.name LIMIT $k";
+
+    private static final String MOST_TALENTED_MUSICIANS =
+            "MATCH (m:Musician)<-[:musician]-(l:MusicianInstrument) " +
+            "OPTIONAL MATCH (l)-[:musicalInstruments]->(i:MusicalInstrument) " +
+            "WITH m, count(DISTINCT i) AS instruments " +
+            "RETURN m ORDER BY instruments DESC, m.name LIMIT $k";
+
+    private static final String MOST_SOCIAL_MUSICIANS =
+            "MATCH (a:Album)-[:featuredMusicians]->(m:Musician) " +
+            "OPTIONAL MATCH (a)-[:featuredMusicians]->(other:Musician) WHERE other <> m " +
+            "WITH m, count(DISTINCT other) AS collaborators " +
+            "RETURN m ORDER BY collaborators DESC, m.name LIMIT $k";
+
+    private static final String BUSIEST_YEARS =
+            "MATCH (a:Album) " +
+            "RETURN a.releaseYear AS year, count(a) AS albums ORDER BY albums DESC, year LIMIT $k";
+
+    private static final String MOST_SIMILAR_ALBUMS =
+            "MATCH (a:Album) " +
+            "WHERE a.genre = $genre AND ($musician IS NULL OR (a)-[:featuredMusicians]->(:Musician {name: $musician})) " +
+            "WITH collect(a) AS candidates " +
+            "UNWIND candidates AS a " +
+            "OPTIONAL MATCH (a)-[:featuredMusicians]->(m:Musician)<-[:featuredMusicians]-(other:Album) " +
+            "WHERE other IN candidates AND other <> a AND ($musician IS NULL OR m.name <> $musician) " +
+            "WITH candidates, a, count(DISTINCT m) AS musicians " +
+            "OPTIONAL MATCH (a)-[:instruments]->(:MusicianInstrument)-[:musicalInstruments]->(i:MusicalInstrument)" +
+            "<-[:musicalInstruments]-(:MusicianInstrument)<-[:instruments]-(other:Album) " +
+            "WHERE other IN candidates AND other <> a " +
+            "WITH a, musicians + count(DISTINCT i) AS shared " +
+            "RETURN a ORDER BY shared DESC, " + ALBUM_ORDER + " LIMIT $k";
+
+    private static final String BEST_SELLING_ALBUMS =
+            "MATCH (a:Album) " +
+            "RETURN a ORDER BY a.sales DESC, " + ALBUM_ORDER + " LIMIT $k";
+
+    private static final String TOP_RATED_ALBUMS =
+            "MATCH (a:Album) " +
+            "RETURN a ORDER BY a.rating DESC, " + ALBUM_ORDER + " LIMIT $k";
+
+    private static final String TOP_RATED_MUSICIANS =
+            "MATCH (m:Musician) " +
+            "RETURN m ORDER BY m.rating DESC, m.name LIMIT $k";
+
+    private static final String MUSICIANS_HIGHEST_RATED_ALBUMS =
+            "MATCH (a:Album)-[:featuredMusicians]->(:Musician {name: $musician}) " +
+            "RETURN a ORDER BY a.rating DESC, " + ALBUM_ORDER + " LIMIT $k";
+
+    private final Neo4jDAO neo4jDAO;
+    private volatile Mode mode;
+
+    public Neo4jECMMiner(Neo4jDAO dao) {
+        super(dao);
+        this.neo4jDAO = dao;
+        this.mode = Mode.PUSHDOWN;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        if (mode == null)
+            throw new IllegalArgumentException("mode cannot be null");
+        this.mode = mode;
+    }
+
+    @Override
+    public List<Musician> mostProlificMusicians(int k, int startYear, int endYear) {
+        if (isInJvm())
+            return super.mostProlificMusicians(k, startYear, endYear);
+        if (k <= 0)
+            throw new IllegalArgumentException("The input number of k can not less than or equal to zero");
+        if (endYear != -1 && startYear > endYear)
+            throw new IllegalArgumentException("The end year should greater that start year");
+
+        Map<String, Object> parameters = parameters(k);
+        parameters.put("startYear", startYear);
+        parameters.put("endYear", endYear);
+        return query(Musician.class, MOST_PROLIFIC_MUSICIANS, parameters);
+    }
+
+    @Override
+    public List<Musician> mostTalentedMusicians(int k) {
+        if (isInJvm())
+            return super.mostTalentedMusicians(k);
+        if (k <= 0)
+            throw new IllegalArgumentException("k cannot be smaller than one");
+
+        return query(Musician.class, MOST_TALENTED_MUSICIANS, parameters(k));
+    }
+
+    @Override
+    public List<Musician> mostSocialMusicians(int k) {
+        if (isInJvm())
+            return super.mostSocialMusicians(k);
+        if (k <= 0)
+            throw new IllegalArgumentException("The input number of k can not less than or equal to zero");
+
+        return query(Musician.class, MOST_SOCIAL_MUSICIANS, parameters(k));
+    }
+
+    @Override
+    public List<Integer> busiestYears(int k) {
+        if (isInJvm())
+            return super.busiestYears(k);
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        List<Integer> answer = Lists.newArrayList();
+        for (Map<String, Object> row : neo4jDAO.queryRows(BUSIEST_YEARS, parameters(k)))
+            answer.add(((Number) row.get("year")).intValue());
+        return answer;
+    }
+
+    @Override
+    public List<Album> mostSimilarAlbums(int k, String genre, String featuredMusician) {
+        if (isInJvm())
+            return super.mostSimilarAlbums(k, genre, featuredMusician);
+        if (k <= 0 || genre == null || genre.isEmpty())
+            return Lists.newArrayList();
+
+        Map<String, Object> parameters = parameters(k);
+        parameters.put("genre", genre);
+        parameters.put("musician", featuredMusician == null || featuredMusician.isEmpty() ? null : featuredMusician);
+        return query(Album.class, MOST_SIMILAR_ALBUMS, parameters);
+    }
+
+    @Override
+    public List<Album> bestKSellingAlbums(int k) {
+        if (isInJvm())
+            return super.bestKSellingAlbums(k);
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        return query(Album.class, BEST_SELLING_ALBUMS, parameters(k));
+    }
+
+    @Override
+    public List<Album> topKRatedAlbums(int k) {
+        if (isInJvm())
+            return super.topKRatedAlbums(k);
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        return query(Album.class, TOP_RATED_ALBUMS, parameters(k));
+    }
+
+    @Override
+    public List<Musician> topKRatedMusicians(int k) {
+        if (isInJvm())
+            return super.topKRatedMusicians(k);
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        return query(Musician.class, TOP_RATED_MUSICIANS, parameters(k));
+    }
+
+    @Override
+    public List<Album> musiciansHighestRatedAlbums(String featuredMusician, int k) {
+        if (isInJvm())
+            return super.musiciansHighestRatedAlbums(featuredMusician, k);
+        if (k <= 0 || featuredMusician == null || featuredMusician.isEmpty())
+            return Lists.newArrayList();
+
+        Map<String, Object> parameters = parameters(k);
+        parameters.put("musician", featuredMusician);
+        return query(Album.class, MUSICIANS_HIGHEST_RATED_ALBUMS, parameters);
+    }
+
+    private boolean isInJvm() {
+        return mode == Mode.IN_JVM || currentView() != null;
+    }
+
+    private Map<String, Object> parameters(int k) {
+        // a HashMap because some parameters are allowed to be null
+        Map<String, Object> parameters = Maps.newHashMap();
+        parameters.put("k", k);
+        return parameters;
+    }
+
+    private <T extends Entity> List<T> query(Class<T> clazz, String cypher, Map<String, Object> parameters) {
+        return prefetchGraph(neo4jDAO, clazz, neo4jDAO.query(clazz, cypher, parameters));
+    }
+}
@@ -0,0 +1,123 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The release years of every musician's albums, as one sorted int array per musician.
+ *
+ * Counting a musician's albums released in [startYear, endYear] is two binary searches,
+ * so ranking m musicians over any year range costs O(m log a) and never touches an Album.
+ */
+public class ReleaseYearIndex {
+    private final List<Musician> musicians = Lists.newArrayList();
+    private final List<int[]> years = Lists.newArrayList();
+    private final Map<Musician, Integer> slots = Maps.newHashMap();
+
+    public static ReleaseYearIndex of(Iterable<Musician> musicians) {
+        ReleaseYearIndex index = new ReleaseYearIndex();
+        for (Musician musician : musicians)
+            index.put(musician);
+        return index;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Indexes the release years of the musician's albums, replacing what was indexed for
+     * an equal musician before.
+     */
+    public void put(Musician musician) {
+        List<Integer> releaseYears = Lists.newArrayList();
+        if (musician.getAlbums() != null) {
+            for (Album album : musician.getAlbums())
+                releaseYears.add(album.getReleaseYear());
+        }
+        put(musician, releaseYears);
+    }
+
+    /**
+     * Indexes the release years as those of the musician's albums, replacing what was
+     * indexed for an equal musician before.
+     */
+    public void put(Musician musician, Collection<Integer> albumReleaseYears) {
+        int[] releaseYears = Ints.toArray(albumReleaseYears);
+        Arrays.sort(releaseYears);
+
+        Integer slot = slots.get(musician);
+        if (slot == null) {
+            slots.put(musician, musicians.size());
+            musicians.add(musician);
+            years.add(releaseYears);
+        } else {
+            musicians.set(slot, musician);
+            years.set(slot, releaseYears);
+        }
+    }
+
+    public void remove(Musician musician) {
+        Integer slot = slots.remove(musician);
+        if (slot == null)
+            return;
+
+        // move the last slot into the hole so the lists stay dense
+        int last = musicians.size() - 1;
+        if (slot != last) {
+            Musician moved = musicians.get(last);
+            musicians.set(slot, moved);
+            years.set(slot, years.get(last));
+            slots.put(moved, slot);
+        }
+        musicians.remove(last);
+        years.remove(last);
+    }
+
+    /**
+     * Number of albums of the musician released in [startYear, endYear], where a bound
+     * of -1 is ignored.
+     */
+    public int count(Musician musician, int startYear, int endYear) {
+        Integer slot = slots.get(musician);
+        return slot == null ? 0 : count(years.get(slot), startYear, endYear);
+    }
+
+    /**
+     * Returns the k musicians with the most albums released in [startYear, endYear],
+     * ties ranked by name.
+     */
+    public List<Musician> mostProlific(int k, int startYear, int endYear) {
+        TopKSelector<Musician> selector = new TopKSelector<>(k, ECMMiner.MUSICIAN_ORDER);
+        for (int i = 0; i < musicians.size(); i++)
+            selector.offer(musicians.get(i), count(years.get(i), startYear, endYear));
+        return selector.toList();
+    }
+
+    private static int count(int[] releaseYears, int startYear, int endYear) {
+        int from = startYear == -1 ? 0 : firstNotBefore(releaseYears, startYear);
+        int to = endYear == -1 ? releaseYears.length : firstNotBefore(releaseYears, endYear + 1);
+        return Math.max(0, to - from);
+    }
+
+    private static int firstNotBefore(int[] releaseYears, int year) {
+        int low = 0;
+        int high = releaseYears.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (releaseYears[middle] < year)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+}
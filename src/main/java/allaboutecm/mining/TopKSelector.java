@@ -0,0 +1,160 @@
+package allaboutecm.mining;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Keeps the k highest scored items offered to it in a bounded min-heap, so selecting
+ * from n items costs O(n log k) and never holds more than k of them.
+ *
+ * Items are ranked by descending score. Items with the same score are ranked by the
+ * tie breaker, the one ordered first by it wins, which makes the result independent
+ * of the order in which items were offered.
+ */
+public class TopKSelector<T> {
+    private final int k;
+    private final Comparator<? super T> tieBreaker;
+
+    // heap[0] is the worst item retained so far
+    private Object[] items;
+    private double[] scores;
+    private int size;
+
+    public TopKSelector(int k, Comparator<? super T> tieBreaker) {
+        if (k <= 0)
+            throw new IllegalArgumentException("k cannot be smaller than one");
+        notNull(tieBreaker);
+
+        this.k = k;
+        this.tieBreaker = tieBreaker;
+        // grows on demand, so a large k over a small input stays cheap
+        int capacity = Math.min(k, 16);
+        this.items = new Object[capacity];
+        this.scores = new double[capacity];
+    }
+
+    private TopKSelector(int k, Comparator<? super T> tieBreaker, Object[] items, double[] scores, int size) {
+        this.k = k;
+        this.tieBreaker = tieBreaker;
+        this.items = items;
+        this.scores = scores;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Offers an item with its score, it is retained only if it ranks among the best k seen so far.
+     */
+    public void offer(T item, double score) {
+        notNull(item);
+
+        if (size < k) {
+            if (size == items.length)
+                grow();
+            items[size] = item;
+            scores[size] = score;
+            siftUp(size);
+            size++;
+        } else if (isWorse(scores[0], item(0), score, item)) {
+            items[0] = item;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Offers every item retained by another selector, so selectors filled from separate
+     * partitions of the input retain the same items as one selector filled from all of it.
+     */
+    public TopKSelector<T> merge(TopKSelector<? extends T> other) {
+        for (int i = 0; i < other.size; i++)
+            offer(other.item(i), other.scores[i]);
+        return this;
+    }
+
+    /**
+     * Returns the retained items, best first.
+     */
+    public List<T> toList() {
+        TopKSelector<T> copy = new TopKSelector<>(k, tieBreaker,
+                Arrays.copyOf(items, size), Arrays.copyOf(scores, size), size);
+        Object[] answer = new Object[size];
+        for (int i = size - 1; i >= 0; i--)
+            answer[i] = copy.pollWorst();
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(answer);
+        return list;
+    }
+
+    private Object pollWorst() {
+        Object worst = items[0];
+        size--;
+        items[0] = items[size];
+        scores[0] = scores[size];
+        items[size] = null;
+        if (size > 0)
+            siftDown(0);
+        return worst;
+    }
+
+    private void grow() {
+        int capacity = (int) Math.min((long) k, 2L * items.length);
+        items = Arrays.copyOf(items, capacity);
+        scores = Arrays.copyOf(scores, capacity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int i) {
+        return (T) items[i];
+    }
+
+    /**
+     * Whether (scoreA, a) ranks below (scoreB, b).
+     */
+    private boolean isWorse(double scoreA, T a, double scoreB, T b) {
+        if (scoreA != scoreB)
+            return scoreA < scoreB;
+        return tieBreaker.compare(a, b) > 0;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isWorse(scores[i], item(i), scores[parent], item(parent)))
+                break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size)
+                break;
+            int worst = left;
+            int right = left + 1;
+            if (right < size && isWorse(scores[right], item(right), scores[left], item(left)))
+                worst = right;
+            if (!isWorse(scores[worst], item(worst), scores[i], item(i)))
+                break;
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(int i, int j) {
+        Object item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
@@ -0,0 +1,120 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import com.google.common.collect.Lists;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Number of albums released per year, kept in an int array indexed by the offset of
+ * the year from the first year covered.
+ *
+ * The default range is the one accepted by Album.setReleaseYear, years outside of it
+ * grow the array instead of being dropped. Histograms built over separate partitions
+ * of the albums can be merged.
+ */
+public class YearHistogram {
+    private int firstYear;
+    private int[] counts;
+
+    public YearHistogram() {
+        this(Album.EARLIEST_RELEASE_YEAR, Calendar.getInstance().get(Calendar.YEAR));
+    }
+
+    public YearHistogram(int firstYear, int lastYear) {
+        if (lastYear < firstYear)
+            throw new IllegalArgumentException("The last year should not be before the first year");
+        this.firstYear = firstYear;
+        this.counts = new int[lastYear - firstYear + 1];
+    }
+
+    public static YearHistogram of(Iterable<Album> albums) {
+        YearHistogram histogram = new YearHistogram();
+        for (Album album : albums)
+            histogram.add(album.getReleaseYear());
+        return histogram;
+    }
+
+    public void add(int year) {
+        ensureCovers(year);
+        counts[year - firstYear]++;
+    }
+
+    /**
+     * Takes back one album released in the year, counts never go below zero.
+     */
+    public void remove(int year) {
+        if (count(year) > 0)
+            counts[year - firstYear]--;
+    }
+
+    public int count(int year) {
+        if (year < firstYear || year >= firstYear + counts.length)
+            return 0;
+        return counts[year - firstYear];
+    }
+
+    /**
+     * Adds the counts of another histogram into this one.
+     */
+    public YearHistogram merge(YearHistogram other) {
+        if (other.counts.length == 0)
+            return this;
+        ensureCovers(other.firstYear);
+        ensureCovers(other.firstYear + other.counts.length - 1);
+        int offset = other.firstYear - firstYear;
+        for (int i = 0; i < other.counts.length; i++)
+            counts[offset + i] += other.counts[i];
+        return this;
+    }
+
+    /**
+     * Resets every count to zero so the histogram can be filled again.
+     */
+    public void clear() {
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Returns the k years with the most albums, busiest first. Years with the same number
+     * of albums are ranked from the earliest. Years without albums are never returned.
+     */
+    public List<Integer> topYears(int k) {
+        if (k <= 0)
+            return Lists.newArrayList();
+
+        // the number of buckets is bounded by the year range, so a bounded insertion
+        // into the k best offsets is cheaper here than a heap
+        int[] best = new int[Math.min(k, counts.length)];
+        int size = 0;
+        for (int i = 0; i < counts.length; i++) {
+            int count = counts[i];
+            if (count == 0 || (size == best.length && count <= counts[best[size - 1]]))
+                continue;
+            int j = size < best.length ? size++ : size - 1;
+            while (j > 0 && counts[best[j - 1]] < count) {
+                best[j] = best[j - 1];
+                j--;
+            }
+            best[j] = i;
+        }
+
+        List<Integer> answer = Lists.newArrayListWithCapacity(size);
+        for (int i = 0; i < size; i++)
+            answer.add(firstYear + best[i]);
+        return answer;
+    }
+
+    private void ensureCovers(int year) {
+        if (year < firstYear) {
+            int[] grown = new int[counts.length + (firstYear - year)];
+            System.arraycopy(counts, 0, grown, firstYear - year, counts.length);
+            counts = grown;
+            firstYear = year;
+        } else if (year >= firstYear + counts.length) {
+            counts = Arrays.copyOf(counts, year - firstYear + 1);
+        }
+    }
+}
@@ -24,13 +24,20 @@ import static org.apache.commons.lang3.Validate.notNull;
  */
 @NodeEntity
 public class Album extends Entity {
+    /**
+     * Earliest release year accepted by setReleaseYear.
+     */
+    public static final int EARLIEST_RELEASE_YEAR = 1970;
 
+    @NaturalId
     @Property(name="releaseYear")
     private int releaseYear;
 
+    @NaturalId
     @Property(name="recordNumber")
     private String recordNumber;
 
+    @NaturalId
     @Property(name="albumName")
     private String albumName;
 
@@ -152,7 +159,7 @@ public class Album extends Entity {
     public void setReleaseYear(int releaseYear) {
         if (releaseYear > Calendar.getInstance().get(Calendar.YEAR))
             throw new IllegalArgumentException("Year invalid");
-        else if (releaseYear < 1970 || releaseYear > Calendar.getInstance().get(Calendar.YEAR))
+        else if (releaseYear < EARLIEST_RELEASE_YEAR || releaseYear > Calendar.getInstance().get(Calendar.YEAR))
             throw new IllegalArgumentException("Year Cannot be negative");
         this.releaseYear = releaseYear;
 
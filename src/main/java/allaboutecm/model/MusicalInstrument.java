@@ -10,6 +10,7 @@ import static org.apache.commons.lang3.Validate.notNull;
 
 @NodeEntity
 public class MusicalInstrument extends Entity {
+    @NaturalId
     @Property(name="musicalInstrumentName")
     private String name;
 
@@ -19,6 +19,7 @@ import java.util.Set;
  */
 @NodeEntity
 public class Musician extends Entity {
+    @NaturalId
     @Property(name="name")
     private String name;
 
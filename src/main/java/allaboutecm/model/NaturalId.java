@@ -0,0 +1,18 @@
+package allaboutecm.model;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field as part of the natural key of its entity class, the properties that identify
+ * an entity independently of its id. The natural key of a class is made of all its marked
+ * fields, and is what its equals method compares.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NaturalId {
+}
@@ -0,0 +1,92 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncDAOUnitTest {
+    private DAO dao;
+    private ThreadPoolExecutor executor;
+    private AsyncDAO asyncDAO;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        executor = AsyncDAO.boundedExecutor("async-dao", 1, 1);
+        asyncDAO = new AsyncDAO(dao, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Independent lookups should be composed from their futures")
+    public void shouldComposeLookups() throws Exception {
+        Musician keith = new Musician("Keith Jarrett");
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        when(dao.findMusicianByName("Keith Jarrett")).thenReturn(keith);
+        when(dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert")).thenReturn(koln);
+
+        CompletableFuture<String> both = asyncDAO.findMusicianByName("Keith Jarrett")
+                .thenCombine(asyncDAO.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert"),
+                        (musician, album) -> musician.getName() + " - " + album.getAlbumName());
+
+        assertEquals("Keith Jarrett - The Köln Concert", both.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("An operation beyond the queue capacity should fail its future with a rejection")
+    public void shouldRejectWhenQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(dao.load(Musician.class, 1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new Musician("Keith Jarrett");
+        });
+
+        CompletableFuture<Musician> running = asyncDAO.load(Musician.class, 1L);
+        started.await(10, TimeUnit.SECONDS);
+        CompletableFuture<Musician> queued = asyncDAO.load(Musician.class, 1L);
+        CompletableFuture<Musician> rejected = asyncDAO.load(Musician.class, 1L);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> rejected.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+        release.countDown();
+        assertEquals("Keith Jarrett", running.get(10, TimeUnit.SECONDS).getName());
+        assertEquals("Keith Jarrett", queued.get(10, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    @DisplayName("A failing operation should fail its future")
+    public void shouldFailFutureOfFailingOperation() {
+        Musician keith = new Musician("Keith Jarrett");
+        doThrow(new IllegalStateException("store unavailable")).when(dao).delete(keith);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncDAO.delete(keith).get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    @DisplayName("A bounded executor should not accept a non-positive size")
+    public void shouldRejectInvalidExecutorSizes() {
+        assertThrows(IllegalArgumentException.class, () -> AsyncDAO.boundedExecutor("async-dao", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> AsyncDAO.boundedExecutor("async-dao", 1, 0));
+    }
+}
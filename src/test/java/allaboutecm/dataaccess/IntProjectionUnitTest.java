@@ -0,0 +1,70 @@
+package allaboutecm.dataaccess;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntProjectionUnitTest {
+    private final IntProjection projection = new IntProjection(new long[]{10, 11, 12, 13, 14}, new int[]{5, 9, 7, 7, 1});
+
+    @Test
+    @DisplayName("Top ids should hold the k largest values")
+    public void shouldReturnIdsOfLargestValues() {
+        assertArrayEquals(new long[]{11}, projection.topIds(1));
+        assertEquals(0, projection.topIds(0).length);
+        assertEquals(5, projection.topIds(8).length);
+    }
+
+    @Test
+    @DisplayName("Ties with the k-th value should go to the smallest ids")
+    public void shouldBreakTiesWithTheKthValueOnIds() {
+        long[] top = projection.topIds(2);
+        Arrays.sort(top);
+        assertArrayEquals(new long[]{11, 12}, top);
+
+        top = projection.topIds(3);
+        Arrays.sort(top);
+        assertArrayEquals(new long[]{11, 12, 13}, top);
+    }
+
+    @Test
+    @DisplayName("Top ids should be the first k of the values sorted in descending order")
+    public void shouldSelectLikeASort() {
+        Random random = new Random(17);
+        long[] ids = new long[1000];
+        int[] values = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ids.length - i;
+            values[i] = random.nextInt(20);
+        }
+        IntProjection large = new IntProjection(ids, values);
+        List<Integer> ranked = Lists.newArrayList();
+        for (int i = 0; i < ids.length; i++)
+            ranked.add(i);
+        ranked.sort(Comparator.<Integer>comparingInt(i -> -values[i]).thenComparingLong(i -> ids[i]));
+
+        for (int k : new int[]{1, 7, 50, 999}) {
+            long[] expected = new long[k];
+            for (int i = 0; i < k; i++)
+                expected[i] = ids[ranked.get(i)];
+            Arrays.sort(expected);
+            long[] top = large.topIds(k);
+            Arrays.sort(top);
+            assertArrayEquals(expected, top);
+        }
+    }
+
+    @Test
+    @DisplayName("Columns of different lengths should be rejected")
+    public void shouldRejectColumnsOfDifferentLengths() {
+        assertThrows(IllegalArgumentException.class, () -> new IntProjection(new long[]{1}, new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new IntProjection(null, new int[0]));
+    }
+}
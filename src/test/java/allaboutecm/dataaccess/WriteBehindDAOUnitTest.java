@@ -0,0 +1,203 @@
+package allaboutecm.dataaccess;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class WriteBehindDAOUnitTest {
+    private DAO delegate;
+    private WriteBehindDAO dao;
+
+    @BeforeEach
+    public void setUp() {
+        delegate = mock(DAO.class);
+        dao = new WriteBehindDAO(delegate, 100, 1, TimeUnit.HOURS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dao.close();
+    }
+
+    @Test
+    @DisplayName("Repeated saves of the same album should be written once with the latest values")
+    @SuppressWarnings("unchecked")
+    public void shouldCoalesceSavesOfTheSameKey() {
+        List<Album> updates = Lists.newArrayList();
+        for (int sales = 1; sales <= 50; sales++) {
+            Album album = new Album(1975, "ECM 1064/65", "The Köln Concert");
+            album.setSales(sales);
+            dao.createOrUpdate(album);
+            updates.add(album);
+        }
+        Album latest = updates.get(49);
+        dao.createOrUpdate(new Musician("Keith Jarrett"));
+        verifyNoInteractions(delegate);
+        assertSame(latest, dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert"));
+
+        dao.flush();
+
+        verify(delegate).createOrUpdateAll(argThat((Collection<Album> batch) -> batch.size() == 2 && batch.contains(latest)));
+        assertEquals(51, dao.getSaveCount());
+        assertEquals(2, dao.getWriteCount());
+        assertEquals(0, dao.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Reaching the pending limit should flush in the background")
+    public void shouldFlushWhenPendingLimitIsReached() {
+        WriteBehindDAO small = new WriteBehindDAO(delegate, 2, 1, TimeUnit.HOURS);
+        try {
+            small.createOrUpdate(new Musician("Keith Jarrett"));
+            verifyNoInteractions(delegate);
+            small.createOrUpdate(new Musician("Jan Garbarek"));
+            verify(delegate, timeout(5000)).createOrUpdateAll(anyCollection());
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Saves beyond the pending limit should be rejected while the delegate is down")
+    public void shouldRejectSavesWhenFull() {
+        WriteBehindDAO small = new WriteBehindDAO(delegate, 2, 1, TimeUnit.HOURS);
+        try {
+            AtomicBoolean down = new AtomicBoolean(true);
+            doAnswer(invocation -> {
+                if (down.get())
+                    throw new IllegalStateException("store unavailable");
+                return invocation.getArgument(0);
+            }).when(delegate).createOrUpdateAll(anyCollection());
+            small.createOrUpdate(new Musician("Keith Jarrett"));
+            small.createOrUpdate(new Musician("Jan Garbarek"));
+            Musician charlie = new Musician("Charlie Haden");
+            assertThrows(IllegalStateException.class, () -> small.createOrUpdate(charlie));
+            assertThrows(IllegalStateException.class, () -> small.createOrUpdateAll(Lists.newArrayList(charlie)));
+
+            // a pending key is still replaced, a rejected one was never taken
+            Musician keithAgain = new Musician("Keith Jarrett");
+            small.createOrUpdate(keithAgain);
+            assertSame(keithAgain, small.findMusicianByName("Keith Jarrett"));
+            assertNull(small.findMusicianByName("Charlie Haden"));
+            assertEquals(2, small.getPendingCount());
+            assertEquals(3, small.getSaveCount());
+
+            down.set(false);
+            small.createOrUpdate(charlie);
+            small.flush();
+            assertEquals(3, small.getWriteCount());
+            assertEquals(0, small.getPendingCount());
+        } finally {
+            small.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Pending saves should be flushed in the background")
+    public void shouldFlushInBackground() {
+        WriteBehindDAO fast = new WriteBehindDAO(delegate, 100, 10, TimeUnit.MILLISECONDS);
+        try {
+            fast.createOrUpdate(new Musician("Keith Jarrett"));
+            verify(delegate, timeout(5000)).createOrUpdateAll(anyCollection());
+        } finally {
+            fast.close();
+        }
+    }
+
+    @Test
+    @DisplayName("Reads and deletes should observe every earlier save")
+    public void shouldFlushBeforePassingThrough() {
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keith);
+        dao.loadAll(Musician.class);
+        dao.delete(keith);
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createOrUpdateAll(Lists.newArrayList(keith));
+        inOrder.verify(delegate).loadAll(Musician.class);
+        inOrder.verify(delegate).delete(keith);
+    }
+
+    @Test
+    @DisplayName("Entities without a natural key should be written through")
+    public void shouldWriteThroughEntitiesWithoutNaturalKey() {
+        Musician keith = new Musician("Keith Jarrett");
+        MusicianInstrument link = new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")));
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(link);
+
+        InOrder inOrder = inOrder(delegate);
+        inOrder.verify(delegate).createOrUpdateAll(Lists.newArrayList(keith));
+        inOrder.verify(delegate).createOrUpdate(link);
+        assertEquals(0, dao.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("A failed flush should keep the saves pending unless newer ones replaced them")
+    public void shouldKeepSavesOfFailedFlush() {
+        Musician keith = new Musician("Keith Jarrett");
+        doThrow(new IllegalStateException("store unavailable")).when(delegate).createOrUpdateAll(anyCollection());
+        dao.createOrUpdate(keith);
+
+        assertThrows(IllegalStateException.class, () -> dao.flush());
+        assertEquals(1, dao.getPendingCount());
+        assertEquals(0, dao.getWriteCount());
+
+        reset(delegate);
+        dao.flush();
+        verify(delegate).createOrUpdateAll(Lists.newArrayList(keith));
+        assertEquals(1, dao.getWriteCount());
+    }
+
+    @Test
+    @DisplayName("Saves being flushed should still be found and counted as pending")
+    public void shouldFindSavesBeingFlushed() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            written.await();
+            return invocation.getArgument(0);
+        }).when(delegate).createOrUpdateAll(anyCollection());
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keith);
+
+        Thread flusher = new Thread(dao::flush);
+        flusher.start();
+        writing.await();
+        assertSame(keith, dao.findMusicianByName("Keith Jarrett"));
+        assertEquals(1, dao.getPendingCount());
+        written.countDown();
+        flusher.join();
+        assertEquals(0, dao.getPendingCount());
+    }
+
+    @Test
+    @DisplayName("Closing should flush what is pending and reject later saves")
+    public void shouldFlushOnClose() {
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keith);
+        dao.close();
+
+        verify(delegate).createOrUpdateAll(Lists.newArrayList(keith));
+        assertThrows(IllegalStateException.class, () -> dao.createOrUpdate(new Musician("Jan Garbarek")));
+    }
+}
@@ -0,0 +1,216 @@
+package allaboutecm.dataaccess.memory;
+
+import allaboutecm.dataaccess.ChangeListener;
+import allaboutecm.dataaccess.IntProjection;
+import allaboutecm.mining.ECMMiner;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.Filters;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class InMemoryDAOUnitTest {
+    private InMemoryDAO dao;
+
+    @BeforeEach
+    public void setUp() {
+        dao = new InMemoryDAO();
+    }
+
+    @Test
+    @DisplayName("Saving an entity with the natural key of a saved one should update it")
+    public void shouldUpsertOnNaturalKey() {
+        Album koln = dao.createOrUpdate(new Album(1975, "ECM 1064/65", "The Koln Concert"));
+        Album copy = new Album(1975, "ECM 1064/65", "The Koln Concert");
+        copy.setSales(3500000);
+        dao.createOrUpdate(copy);
+
+        assertEquals(koln.getId(), copy.getId());
+        assertEquals(1, dao.loadAll(Album.class).size());
+        assertSame(copy, dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Koln Concert"));
+        assertSame(copy, dao.load(Album.class, koln.getId()));
+        assertNull(dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "Sun Bear Concerts"));
+    }
+
+    @Test
+    @DisplayName("Saving an entity with changed key values should keep its id and forget the previous ones")
+    public void shouldReindexChangedNaturalKey() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarret"));
+        Long id = keith.getId();
+        keith.setName("Keith Jarrett");
+        dao.createOrUpdate(keith);
+
+        assertEquals(id, keith.getId());
+        assertNull(dao.findMusicianByName("Keith Jarret"));
+        assertSame(keith, dao.findMusicianByName("Keith Jarrett"));
+        assertEquals(1, dao.loadAll(Musician.class).size());
+
+        Musician jan = dao.createOrUpdate(new Musician("Jan Garbarek"));
+        jan.setName("Keith Jarrett");
+        dao.createOrUpdate(jan);
+        assertEquals(id, jan.getId());
+        assertNull(dao.findMusicianByName("Jan Garbarek"));
+        assertEquals(1, dao.loadAll(Musician.class).size());
+
+        jan.setName("Jan Garbarek");
+        dao.delete(jan);
+        assertNull(dao.findMusicianByName("Keith Jarrett"));
+        assertTrue(dao.loadAll(Musician.class).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Related entities should be saved with the entity, merged on their natural key")
+    public void shouldSaveRelatedEntities() {
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        Musician keithAgain = new Musician("Keith Jarrett");
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        Album koln = new Album(1975, "ECM 1064/65", "The Koln Concert");
+        koln.setFeaturedMusicians(Lists.newArrayList(keithAgain));
+        koln.setInstruments(Sets.newHashSet(new MusicianInstrument(keithAgain, Sets.newHashSet(piano))));
+
+        dao.createOrUpdate(koln);
+
+        assertEquals(keith.getId(), keithAgain.getId());
+        assertEquals(1, dao.loadAll(Musician.class).size());
+        assertSame(keith, dao.findMusicianByName("Keith Jarrett"));
+        assertEquals(1, dao.loadAll(MusicianInstrument.class).size());
+        // two hops away, as with a depth 1 save
+        assertNull(piano.getId());
+        assertNull(dao.findMusicalInstrumentByName("Piano"));
+    }
+
+    @Test
+    @DisplayName("Saving an entity should not replace the stored entities it is related to")
+    public void shouldKeepStoredRelatedEntities() {
+        Musician keith = new Musician("Keith Jarrett");
+        Album koln = new Album(1975, "ECM 1064/65", "The Koln Concert");
+        keith.setAlbums(Sets.newHashSet(koln));
+        dao.createOrUpdate(keith);
+
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(new Musician("Keith Jarrett")));
+        dao.createOrUpdate(belonging);
+
+        Musician stored = dao.load(Musician.class, keith.getId());
+        assertSame(keith, stored);
+        assertEquals(Sets.newHashSet(koln), stored.getAlbums());
+        assertEquals(Lists.newArrayList(keith), new ECMMiner(dao).mostProlificMusicians(1, -1, -1));
+        // saved itself, the entity replaces the stored one
+        Musician keithAgain = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keithAgain);
+        assertSame(keithAgain, dao.findMusicianByName("Keith Jarrett"));
+    }
+
+    @Test
+    @DisplayName("Reads should cover every saved entity of a class")
+    public void shouldReadSavedEntities() {
+        List<Album> albums = Lists.newArrayList();
+        for (int year = 1975; year < 1980; year++) {
+            Album album = new Album(year, "ECM " + year, "Album " + year);
+            album.setSales(year - 1970);
+            albums.add(album);
+        }
+        dao.createOrUpdateAll(albums);
+
+        assertEquals(albums, dao.stream(Album.class, 2).collect(Collectors.toList()));
+        assertEquals(Lists.newArrayList(albums.get(1), albums.get(3)),
+                dao.loadAll(Album.class, Lists.newArrayList(albums.get(1).getId(), -1L, albums.get(3).getId())));
+        IntProjection sales = dao.projectInt(Album.class, "sales");
+        assertEquals(5, sales.size());
+        assertArrayEquals(new long[]{albums.get(4).getId()}, sales.topIds(1));
+        assertThrows(IllegalArgumentException.class, () -> dao.projectInt(Album.class, "genre"));
+        assertThrows(IllegalArgumentException.class, () -> dao.prefetch(Album.class, albums, "sales"));
+        assertThrows(IllegalArgumentException.class, () -> dao.stream(Album.class, 0));
+    }
+
+    @Test
+    @DisplayName("deleteWhere should evaluate the filters on the entities")
+    public void shouldDeleteMatchingEntities() {
+        for (int year = 1975; year < 1980; year++)
+            dao.createOrUpdate(new Album(year, "ECM " + year, "Album " + year));
+        dao.createOrUpdateAll(Lists.newArrayList(new MusicalInstrument("Piano"), new MusicalInstrument("Oud")));
+        ChangeListener listener = mock(ChangeListener.class);
+        dao.addChangeListener(listener);
+
+        // before 1976, or from 1978 and named ...1979
+        Filters filters = new Filters(new Filter("releaseYear", ComparisonOperator.LESS_THAN, 1976))
+                .or(new Filter("releaseYear", ComparisonOperator.GREATER_THAN_EQUAL, 1978))
+                .and(new Filter("albumName", ComparisonOperator.ENDING_WITH, "1979"));
+        assertEquals(2, dao.deleteWhere(Album.class, filters));
+        assertEquals(Sets.newHashSet(1976, 1977, 1978), dao.loadAll(Album.class).stream()
+                .map(Album::getReleaseYear).collect(Collectors.toSet()));
+        assertNull(dao.findAlbumByYearNumberName(1975, "ECM 1975", "Album 1975"));
+
+        assertThrows(IllegalArgumentException.class, () -> dao.deleteWhere(MusicalInstrument.class,
+                new Filters(new Filter("name", ComparisonOperator.EQUALS, "oud").ignoreCase())));
+        Filter nested = new Filter("name", ComparisonOperator.EQUALS, "Piano");
+        nested.setNestedPath(new Filter.NestedPathSegment("instruments", MusicianInstrument.class),
+                new Filter.NestedPathSegment("musicalInstruments", MusicalInstrument.class));
+        assertThrows(IllegalArgumentException.class, () -> dao.deleteWhere(Album.class, new Filters(nested)));
+        assertEquals(1, dao.deleteWhere(MusicalInstrument.class, new Filters(new Filter("name", ComparisonOperator.LIKE, "o*D"))));
+        assertNotNull(dao.findMusicalInstrumentByName("Piano"));
+        assertEquals(3, dao.deleteAll(Album.class));
+        assertEquals(0, dao.deleteAll(Album.class));
+
+        verify(listener, times(2)).onDeleteAll(Album.class);
+        verify(listener).onDeleteAll(MusicalInstrument.class);
+    }
+
+    @Test
+    @DisplayName("Concurrent saves of the same keys should leave one entity per key")
+    public void shouldServeConcurrentWriters() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int thread = 0; thread < 8; thread++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        dao.createOrUpdate(new Musician("Musician " + i));
+                        dao.findMusicianByName("Musician " + (99 - i));
+                        dao.loadAll(Musician.class);
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(100, dao.loadAll(Musician.class).size());
+        assertEquals(100, dao.loadAll(Musician.class).stream().map(Musician::getId).distinct().count());
+    }
+
+    @Test
+    @DisplayName("ECMMiner should answer its queries from the in-memory DAO")
+    public void shouldBackECMMiner() {
+        Musician keith = new Musician("Keith Jarrett");
+        Album koln = new Album(1975, "ECM 1064/65", "The Koln Concert");
+        koln.setSales(3500000);
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setSales(100000);
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith));
+        keith.setAlbums(Sets.newHashSet(koln, belonging));
+        dao.createOrUpdateAll(Lists.newArrayList(koln, belonging));
+
+        ECMMiner miner = new ECMMiner(dao);
+        assertEquals(Lists.newArrayList(koln), miner.bestKSellingAlbums(1));
+        assertEquals(Lists.newArrayList(keith), miner.mostProlificMusicians(1, 1970, 1980));
+    }
+}
@@ -1,16 +1,26 @@
 package allaboutecm.dataaccess.neo4j;
 
+import allaboutecm.dataaccess.ChangeListener;
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.IntProjection;
 import allaboutecm.model.Album;
+import allaboutecm.model.Entity;
 import allaboutecm.model.MusicalInstrument;
 import allaboutecm.model.Musician;
 import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.context.MappingContext;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.session.Neo4jSession;
 import org.neo4j.ogm.session.Session;
 import org.neo4j.ogm.session.SessionFactory;
 
@@ -21,10 +31,20 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -331,4 +351,469 @@ class Neo4jDAOUnitTest {
         assertEquals(musician, musician2);
         assertEquals(null, musician3);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldNotifyChangeListenersAfterWrites() {
+        List<Entity> saved = Lists.newArrayList();
+        List<Entity> deleted = Lists.newArrayList();
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void onSave(Entity entity) {
+                saved.add(entity);
+            }
+
+            @Override
+            public void onDelete(Entity entity) {
+                deleted.add(entity);
+            }
+        };
+        dao.addChangeListener(listener);
+        try {
+            Musician musician = new Musician("Keith Jarrett");
+            dao.createOrUpdate(musician);
+            dao.delete(musician);
+
+            assertEquals(Lists.newArrayList(musician), saved);
+            assertEquals(Lists.newArrayList(musician), deleted);
+        } finally {
+            dao.removeChangeListener(listener);
+        }
+
+        dao.createOrUpdate(new Musician("Jan Garbarek"));
+        assertEquals(1, saved.size());
+    }
+
+    @Test
+    public void shouldNotifyChangeListenersOfEntitiesCreatedWithASave() {
+        List<Entity> saved = Lists.newArrayList();
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void onSave(Entity entity) {
+                saved.add(entity);
+            }
+
+            @Override
+            public void onDelete(Entity entity) {
+            }
+        };
+        dao.addChangeListener(listener);
+        try {
+            Musician keith = new Musician("Keith Jarrett");
+            Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+            koln.setFeaturedMusicians(Lists.newArrayList(keith));
+            dao.createOrUpdate(koln);
+            assertEquals(Lists.newArrayList(keith, koln), saved);
+
+            // stored already, the musician is not notified again
+            saved.clear();
+            Album belonging = new Album(1974, "ECM 1050", "Belonging");
+            belonging.setFeaturedMusicians(Lists.newArrayList(keith));
+            dao.createOrUpdateAll(Lists.newArrayList(belonging));
+            assertEquals(Lists.newArrayList(belonging), saved);
+        } finally {
+            dao.removeChangeListener(listener);
+        }
+    }
+
+    @Test
+    public void createOrUpdateAllShouldReuseExistingNodesAcrossBatches() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.setBatchSize(2);
+        try {
+            Album existing = new Album(1975, "ECM 1064/65", "The Köln Concert");
+            dao.createOrUpdate(existing);
+
+            Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+            koln.setSales(3500000);
+            Album belonging = new Album(1974, "ECM 1050", "Belonging");
+            Album magico = new Album(1979, "ECM 1151", "Magico");
+            Album magicoAgain = new Album(1979, "ECM 1151", "Magico");
+            Musician keith = new Musician("Keith Jarrett");
+            Collection<Entity> saved = dao.createOrUpdateAll(Lists.newArrayList(koln, belonging, keith, magico, magicoAgain));
+
+            assertEquals(5, saved.size());
+            assertEquals(existing.getId(), koln.getId());
+            assertNotNull(belonging.getId());
+            assertEquals(magico.getId(), magicoAgain.getId());
+            assertNotNull(keith.getId());
+            assertEquals(3, dao.loadAll(Album.class).size());
+            assertEquals(1, dao.loadAll(Musician.class).size());
+            assertEquals(3500000, dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert").getSales());
+        } finally {
+            neo4jDAO.setBatchSize(Neo4jDAO.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void deleteWhereShouldResolveNestedFilters() {
+        MusicianInstrument piano = new MusicianInstrument(new Musician("Keith Jarrett"), Sets.newHashSet(new MusicalInstrument("Piano")));
+        MusicianInstrument saxophone = new MusicianInstrument(new Musician("Jan Garbarek"), Sets.newHashSet(new MusicalInstrument("Saxophone")));
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setInstruments(Sets.newHashSet(piano));
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setInstruments(Sets.newHashSet(saxophone));
+        dao.createOrUpdateAll(Lists.newArrayList(piano, saxophone));
+        dao.createOrUpdateAll(Lists.newArrayList(koln, belonging));
+
+        Filter playsSaxophone = new Filter("name", ComparisonOperator.EQUALS, "Saxophone");
+        playsSaxophone.setNestedPath(new Filter.NestedPathSegment("instruments", MusicianInstrument.class),
+                new Filter.NestedPathSegment("musicalInstruments", MusicalInstrument.class));
+        assertEquals(1, dao.deleteWhere(Album.class, new Filters(playsSaxophone)));
+        assertEquals("name", playsSaxophone.getPropertyName());
+        assertNull(playsSaxophone.getNestedPath().get(0).getRelationshipType());
+        assertEquals(Lists.newArrayList("The Köln Concert"),
+                dao.loadAll(Album.class).stream().map(Album::getAlbumName).collect(Collectors.toList()));
+
+        Filter playsPiano = new Filter("name", ComparisonOperator.EQUALS, "Piano");
+        playsPiano.setNestedPropertyName("musicalInstruments");
+        assertEquals(1, dao.deleteWhere(MusicianInstrument.class, new Filters(playsPiano)));
+        assertNull(playsPiano.getRelationshipType());
+        assertEquals(1, dao.loadAll(MusicianInstrument.class).size());
+        assertEquals(2, dao.loadAll(MusicalInstrument.class).size());
+
+        Filter notARelationship = new Filter("name", ComparisonOperator.EQUALS, "Piano");
+        notARelationship.setNestedPropertyName("albumName");
+        assertThrows(IllegalArgumentException.class, () -> dao.deleteWhere(Album.class, new Filters(notARelationship)));
+    }
+
+    @Test
+    public void createOrUpdateShouldMergeOnNaturalKey() {
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keith);
+        Musician sameKeith = new Musician("Keith Jarrett");
+        sameKeith.setRating(5);
+        dao.createOrUpdate(sameKeith);
+
+        assertEquals(keith.getId(), sameKeith.getId());
+        assertEquals(1, dao.loadAll(Musician.class).size());
+        assertEquals(5, dao.findMusicianByName("Keith Jarrett").getRating());
+
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument samePiano = new MusicalInstrument("Piano");
+        dao.createOrUpdate(piano);
+        dao.createOrUpdate(samePiano);
+
+        assertNotNull(piano.getId());
+        assertEquals(piano.getId(), samePiano.getId());
+        assertEquals(1, dao.loadAll(MusicalInstrument.class).size());
+    }
+
+    @Test
+    public void createOrUpdateShouldKeepTheNodeOfARenamedEntity() {
+        Musician keith = new Musician("Keith Jarrett");
+        dao.createOrUpdate(keith);
+        Long id = keith.getId();
+
+        keith.setName("Keith Jarrett Trio");
+        dao.createOrUpdate(keith);
+        assertEquals(id, keith.getId());
+        assertEquals(1, dao.loadAll(Musician.class).size());
+        assertNull(dao.findMusicianByName("Keith Jarrett"));
+        assertEquals(id, dao.findMusicianByName("Keith Jarrett Trio").getId());
+
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument oud = new MusicalInstrument("Oud");
+        dao.createOrUpdateAll(Lists.newArrayList(piano, oud));
+        Long pianoId = piano.getId();
+        piano.setName("Grand Piano");
+        dao.createOrUpdateAll(Lists.newArrayList(piano, new MusicalInstrument("Oud")));
+        assertEquals(pianoId, piano.getId());
+        assertEquals(2, dao.loadAll(MusicalInstrument.class).size());
+
+        // deleted, the entity is merged on its key again
+        dao.delete(piano);
+        dao.createOrUpdate(piano);
+        assertNotNull(piano.getId());
+        assertEquals(2, dao.loadAll(MusicalInstrument.class).size());
+    }
+
+    @Test
+    public void streamShouldReadEveryEntityPageByPage() {
+        List<String> names = Lists.newArrayList("Anouar Brahem", "Dave Holland", "Jan Garbarek", "Keith Jarrett", "Pat Metheny");
+        for (String name : names)
+            dao.createOrUpdate(new Musician(name));
+
+        try (Stream<Musician> musicians = dao.stream(Musician.class, 2)) {
+            List<String> streamed = musicians.map(Musician::getName).sorted().collect(Collectors.toList());
+            assertEquals(names, streamed);
+        }
+        try (Stream<Musician> musicians = dao.stream(Musician.class, 5)) {
+            assertEquals(1, musicians.limit(1).count());
+        }
+        assertEquals(0, dao.stream(Album.class, 2).count());
+        assertThrows(IllegalArgumentException.class, () -> dao.stream(Musician.class, 0));
+    }
+
+    @Test
+    public void streamShouldLetGoOfWhatItsPagesLoaded() {
+        List<Long> ids = Lists.newArrayList();
+        for (int i = 0; i < 6; i++) {
+            Album album = new Album(1970 + i, "ECM 100" + i, "Album " + i);
+            Musician musician = new Musician("Musician " + i);
+            album.setFeaturedMusicians(Lists.newArrayList(musician));
+            dao.createOrUpdate(album);
+            ids.add(album.getId());
+            ids.add(musician.getId());
+        }
+        session.clear();
+        Musician held = dao.findMusicianByName("Musician 0");
+        MappingContext context = ((Neo4jSession) session).context();
+        long before = ids.stream().filter(id -> context.getNodeEntity(id) != null).count();
+
+        try (Stream<Album> albums = dao.stream(Album.class, 2)) {
+            Iterators.partition(albums.iterator(), 2).forEachRemaining(page -> {
+                dao.prefetch(Album.class, page, "featuredMusicians");
+                assertEquals(1, page.get(0).getFeaturedMusicians().size());
+                // at most the page and its musicians besides what was held before
+                assertTrue(ids.stream().filter(id -> context.getNodeEntity(id) != null).count() <= before + 4);
+            });
+        }
+        assertEquals(before, ids.stream().filter(id -> context.getNodeEntity(id) != null).count());
+        assertSame(held, context.getNodeEntity(held.getId()));
+    }
+
+    @Test
+    public void projectIntShouldReadOneFieldWithoutLoading() {
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setSales(3500000);
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setSales(200000);
+        dao.createOrUpdateAll(Lists.newArrayList(koln, belonging));
+
+        IntProjection sales = dao.projectInt(Album.class, "sales");
+        assertEquals(2, sales.size());
+        for (int i = 0; i < sales.size(); i++) {
+            long id = sales.getIds()[i];
+            assertEquals(id == koln.getId() ? 3500000 : 200000, sales.getValues()[i]);
+        }
+
+        Collection<Album> top = dao.loadAll(Album.class, Lists.newArrayList(sales.getIds()[0], sales.getIds()[1]));
+        assertEquals(Sets.newHashSet(koln, belonging), Sets.newHashSet(top));
+        int[] years = dao.projectInt(Album.class, "releaseYear").getValues();
+        assertEquals(1974 + 1975, years[0] + years[1]);
+        assertThrows(IllegalArgumentException.class, () -> dao.projectInt(Album.class, "albumName"));
+        assertThrows(IllegalArgumentException.class, () -> dao.projectInt(Album.class, "price"));
+    }
+
+    @Test
+    public void lookupCacheShouldAnswerRepeatedFindsAndFollowWrites() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.enableLookupCache(100, 1, TimeUnit.MINUTES);
+        try {
+            Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+            assertSame(keith, dao.findMusicianByName("Keith Jarrett"));
+            assertSame(keith, dao.findMusicianByName("Keith Jarrett"));
+            assertEquals(2, neo4jDAO.getLookupCacheStats().hitCount());
+
+            assertNull(dao.findMusicalInstrumentByName("Piano"));
+            assertNull(dao.findMusicalInstrumentByName("Piano"));
+            assertEquals(1, neo4jDAO.getLookupCacheStats().missCount());
+            MusicalInstrument piano = dao.createOrUpdate(new MusicalInstrument("Piano"));
+            assertSame(piano, dao.findMusicalInstrumentByName("Piano"));
+
+            Album koln = dao.createOrUpdate(new Album(1975, "ECM 1064/65", "The Köln Concert"));
+            assertSame(koln, dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert"));
+            dao.delete(koln);
+            assertNull(dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Köln Concert"));
+        } finally {
+            neo4jDAO.disableLookupCache();
+        }
+        assertEquals(0, neo4jDAO.getLookupCacheStats().requestCount());
+    }
+
+    @Test
+    public void lookupCacheShouldFollowEntitiesWrittenWithTheSavedOne() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.enableLookupCache(100, 1, TimeUnit.MINUTES);
+        try {
+            assertNull(dao.findMusicianByName("Jan Garbarek"));
+            Album belonging = new Album(1974, "ECM 1050", "Belonging");
+            Musician jan = new Musician("Jan Garbarek");
+            belonging.setFeaturedMusicians(Lists.newArrayList(jan));
+            dao.createOrUpdate(belonging);
+            assertSame(jan, dao.findMusicianByName("Jan Garbarek"));
+
+            assertSame(belonging, dao.findAlbumByYearNumberName(1974, "ECM 1050", "Belonging"));
+            long misses = neo4jDAO.getLookupCacheStats().missCount();
+            jan.setAlbums(Sets.newHashSet(belonging));
+            dao.delete(jan);
+            assertNotNull(dao.findAlbumByYearNumberName(1974, "ECM 1050", "Belonging"));
+            assertEquals(misses + 1, neo4jDAO.getLookupCacheStats().missCount());
+        } finally {
+            neo4jDAO.disableLookupCache();
+        }
+    }
+
+    @Test
+    public void pooledDAOShouldServeConcurrentWritersAndReaders() throws Exception {
+        DAO pooled = new Neo4jDAO(sessionFactory, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 25; i++) {
+                        String name = "Musician " + thread + "-" + i;
+                        pooled.createOrUpdate(new Musician(name));
+                        assertEquals(name, pooled.findMusicianByName(name).getName());
+                    }
+                }));
+            }
+            for (Future<?> future : futures)
+                future.get(1, TimeUnit.MINUTES);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(200, pooled.loadAll(Musician.class).size());
+        assertEquals(200, dao.loadAll(Musician.class).size());
+    }
+
+    @Test
+    public void pooledDAOShouldRemoveRelationshipsOfSavedEntities() {
+        DAO pooled = new Neo4jDAO(sessionFactory, 2);
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jan = new Musician("Jan Garbarek");
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        pooled.createOrUpdate(belonging);
+
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith));
+        pooled.createOrUpdate(belonging);
+        Album loaded = pooled.load(Album.class, belonging.getId());
+        assertEquals(Lists.newArrayList("Keith Jarrett"),
+                loaded.getFeaturedMusicians().stream().map(Musician::getName).collect(Collectors.toList()));
+
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        pooled.createOrUpdateAll(Lists.newArrayList(koln));
+        koln.setFeaturedMusicians(Lists.newArrayList(jan));
+        pooled.createOrUpdateAll(Lists.newArrayList(koln));
+        loaded = pooled.load(Album.class, koln.getId());
+        assertEquals(Lists.newArrayList("Jan Garbarek"),
+                loaded.getFeaturedMusicians().stream().map(Musician::getName).collect(Collectors.toList()));
+        assertEquals(2, pooled.loadAll(Musician.class).size());
+    }
+
+    @Test
+    public void prefetchShouldLoadRelationshipsOfListedEntities() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jan = new Musician("Jan Garbarek");
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        keith.setAlbums(Sets.newHashSet(koln, belonging));
+        jan.setAlbums(Sets.newHashSet(belonging));
+        dao.createOrUpdate(keith);
+        dao.createOrUpdate(jan);
+        dao.createOrUpdate(belonging);
+
+        DAO pooled = new Neo4jDAO(sessionFactory, 1);
+        Collection<Musician> musicians = pooled.loadAll(Musician.class);
+        Collection<Album> albums = pooled.loadAll(Album.class);
+        pooled.prefetch(Musician.class, musicians, "albums");
+        pooled.prefetch(Album.class, albums, "featuredMusicians");
+
+        for (Musician musician : musicians)
+            assertEquals(musician.getName().equals("Keith Jarrett") ? 2 : 1, musician.getAlbums().size());
+        for (Album album : albums) {
+            if (album.getAlbumName().equals("Belonging"))
+                assertEquals(Sets.newHashSet("Keith Jarrett", "Jan Garbarek"),
+                        album.getFeaturedMusicians().stream().map(Musician::getName).collect(Collectors.toSet()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> pooled.prefetch(Musician.class, musicians, "name"));
+    }
+
+    @Test
+    public void deleteWhereShouldDeleteMatchingEntitiesInChunks() {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        List<Class<?>> bulkDeletes = Lists.newArrayList();
+        ChangeListener listener = new ChangeListener() {
+            @Override
+            public void onSave(Entity entity) {
+            }
+
+            @Override
+            public void onDelete(Entity entity) {
+            }
+
+            @Override
+            public void onDeleteAll(Class<? extends Entity> type) {
+                bulkDeletes.add(type);
+            }
+        };
+        neo4jDAO.setBatchSize(2);
+        dao.addChangeListener(listener);
+        try {
+            List<Album> albums = Lists.newArrayList();
+            for (int year = 1975; year < 1980; year++)
+                albums.add(new Album(year, "ECM " + year, "Album " + year));
+            dao.createOrUpdateAll(albums);
+            dao.createOrUpdateAll(Lists.newArrayList(new MusicalInstrument("Piano"), new MusicalInstrument("Oud")));
+
+            Filters before1978 = new Filters(new Filter("releaseYear", ComparisonOperator.LESS_THAN, 1978));
+            assertEquals(3, dao.deleteWhere(Album.class, before1978));
+            assertEquals(Sets.newHashSet(1978, 1979), dao.loadAll(Album.class).stream()
+                    .map(Album::getReleaseYear).collect(Collectors.toSet()));
+
+            Filter oud = new Filter("name", ComparisonOperator.EQUALS, "Oud");
+            assertEquals(1, dao.deleteWhere(MusicalInstrument.class, new Filters(oud)));
+            // the caller's filter is not rewritten
+            assertEquals("name", oud.getPropertyName());
+            assertNull(dao.findMusicalInstrumentByName("Oud"));
+            assertNotNull(dao.findMusicalInstrumentByName("Piano"));
+
+            assertEquals(2, dao.deleteAll(Album.class));
+            assertEquals(0, dao.deleteAll(Album.class));
+            assertTrue(dao.loadAll(Album.class).isEmpty());
+            assertEquals(Lists.newArrayList(Album.class, MusicalInstrument.class, Album.class), bulkDeletes);
+        } finally {
+            dao.removeChangeListener(listener);
+            neo4jDAO.setBatchSize(Neo4jDAO.DEFAULT_BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void dirtyCheckingShouldSkipUnchangedSaves() throws MalformedURLException {
+        Neo4jDAO neo4jDAO = (Neo4jDAO) dao;
+        neo4jDAO.enableDirtyChecking();
+        try {
+            Musician keith = new Musician("Keith Jarrett");
+            Album koln = new Album(1975, "ECM 1064/65", "The Koln Concert");
+            koln.setFeaturedMusicians(Lists.newArrayList(keith));
+            dao.createOrUpdate(keith);
+            dao.createOrUpdate(koln);
+            long skipped = neo4jDAO.getSkippedSaveCount();
+
+            // a re-sync with fresh copies of the unchanged entities
+            Musician keithAgain = new Musician("Keith Jarrett");
+            Album kolnAgain = new Album(1975, "ECM 1064/65", "The Koln Concert");
+            kolnAgain.setFeaturedMusicians(Lists.newArrayList(keithAgain));
+            dao.createOrUpdateAll(Lists.newArrayList(keithAgain));
+            dao.createOrUpdate(kolnAgain);
+            assertEquals(skipped + 2, neo4jDAO.getSkippedSaveCount());
+            assertEquals(keith.getId(), keithAgain.getId());
+            assertEquals(koln.getId(), kolnAgain.getId());
+
+            keithAgain.setMusicianUrl(new URL("https://www.keithjarrett.org/"));
+            dao.createOrUpdate(keithAgain);
+            kolnAgain.setSales(3500000);
+            dao.createOrUpdate(kolnAgain);
+            assertEquals(skipped + 2, neo4jDAO.getSkippedSaveCount());
+            assertEquals(3500000, dao.findAlbumByYearNumberName(1975, "ECM 1064/65", "The Koln Concert").getSales());
+
+            // a changed related entity is written with the album
+            keithAgain.setMusicianUrl(new URL("https://www.ecmrecords.com/"));
+            dao.createOrUpdate(kolnAgain);
+            assertEquals(skipped + 2, neo4jDAO.getSkippedSaveCount());
+
+            dao.delete(kolnAgain);
+            dao.createOrUpdate(kolnAgain);
+            assertEquals(skipped + 2, neo4jDAO.getSkippedSaveCount());
+            assertEquals(1, dao.loadAll(Album.class).size());
+        } finally {
+            neo4jDAO.disableDirtyChecking();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package allaboutecm.dataaccess.neo4j;
+
+import allaboutecm.dataaccess.NaturalKey;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaManagerUnitTest {
+    private static SessionFactory sessionFactory;
+    private static Session session;
+
+    @BeforeAll
+    public static void setUp() {
+        sessionFactory = SchemaManager.openSessionFactory(new Configuration.Builder().build(),
+                Musician.class.getPackage().getName());
+        session = sessionFactory.openSession();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        session.purgeDatabase();
+        sessionFactory.close();
+    }
+
+    @Test
+    @DisplayName("Natural keys should use the stored property names")
+    public void shouldUseStoredPropertyNames() {
+        assertEquals(Lists.newArrayList("musicalInstrumentName"), NaturalKey.of(MusicalInstrument.class).getProperties());
+        assertEquals(Lists.newArrayList("name"), NaturalKey.of(MusicalInstrument.class).getFieldNames());
+        assertEquals(Lists.newArrayList("albumName", "recordNumber", "releaseYear"), NaturalKey.of(Album.class).getProperties());
+        assertNull(NaturalKey.of(MusicianInstrument.class));
+    }
+
+    @Test
+    @DisplayName("Validation should reject lookups filtering on fields OGM does not map")
+    public void shouldValidateLookupFields() {
+        SchemaManager schemaManager = new SchemaManager(sessionFactory);
+        schemaManager.validate();
+
+        // filters take the field name, not the stored property name
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> schemaManager.validate(
+                ImmutableMap.of(MusicalInstrument.class, ImmutableList.of("musicalInstrumentName"),
+                        MusicianInstrument.class, ImmutableList.of("musician", "instruments"))));
+        assertEquals("Invalid natural keys: MusicalInstrument.musicalInstrumentName is not a mapped field, "
+                + "MusicianInstrument.instruments is not a mapped field", e.getMessage());
+    }
+
+    @Test
+    @DisplayName("Bootstrapping should create a constraint or an index per natural key")
+    public void shouldCreateConstraintsAndIndexes() {
+        SchemaManager schemaManager = new SchemaManager(sessionFactory);
+        assertEquals(Lists.newArrayList(
+                "CREATE INDEX ON :Album(albumName, recordNumber, releaseYear)",
+                "CREATE CONSTRAINT ON (n:MusicalInstrument) ASSERT n.musicalInstrumentName IS UNIQUE",
+                "CREATE CONSTRAINT ON (n:Musician) ASSERT n.name IS UNIQUE"), schemaManager.schemaStatements());
+
+        List<Map<String, Object>> constraints = Lists.newArrayList(
+                session.query("CALL db.constraints()", Collections.emptyMap()).queryResults());
+        assertEquals(2, constraints.size());
+        List<Map<String, Object>> indexes = Lists.newArrayList(
+                session.query("CALL db.indexes()", Collections.emptyMap()).queryResults());
+        assertEquals(3, indexes.size());
+
+        // running it again changes nothing
+        schemaManager.bootstrap();
+        assertEquals(2, Lists.newArrayList(session.query("CALL db.constraints()", Collections.emptyMap()).queryResults()).size());
+    }
+
+    @Test
+    @DisplayName("The constraints should reject a second node with the same natural key")
+    public void shouldRejectDuplicates() {
+        session.query("CREATE (:Musician {name: 'Keith Jarrett'})", Collections.emptyMap());
+        assertThrows(RuntimeException.class,
+                () -> session.query("CREATE (:Musician {name: 'Keith Jarrett'})", Collections.emptyMap()));
+
+        Neo4jDAO dao = new Neo4jDAO(session);
+        Musician keith = dao.createOrUpdate(new Musician("Keith Jarrett"));
+        assertNotNull(keith.getId());
+        assertEquals(1, dao.loadAll(Musician.class).size());
+        session.purgeDatabase();
+    }
+}
@@ -0,0 +1,101 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AlbumIndexUnitTest {
+    private Musician keith;
+    private Musician jan;
+    private Musician charlie;
+    private Album koln;
+    private Album belonging;
+    private Album magico;
+    private Album tabula;
+    private AlbumIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        charlie = new Musician("Charlie Haden");
+
+        koln = album(1975, "ECM 1064/65", "The Köln Concert", "Jazz", keith);
+        belonging = album(1974, "ECM 1050", "Belonging", "Jazz", keith, jan);
+        magico = album(1979, "ECM 1151", "Magico", "Jazz", jan, charlie);
+        tabula = album(1984, "ECM 1275", "Tabula Rasa", "Classical", keith);
+
+        index = AlbumIndex.of(Lists.newArrayList(koln, belonging, magico, tabula));
+    }
+
+    private static Album album(int year, String recordNumber, String name, String genre, Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setGenre(genre);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    @Test
+    @DisplayName("Index should intersect the genre and musician posting lists")
+    public void shouldIntersectGenreAndMusician() {
+        List<Album> albums = index.mostSimilar(10, "Jazz", "Keith Jarrett");
+
+        assertEquals(2, albums.size());
+        assertTrue(albums.contains(koln));
+        assertTrue(albums.contains(belonging));
+        assertTrue(index.mostSimilar(10, "Jazz", "Arvo Part").isEmpty());
+        assertTrue(index.mostSimilar(10, "Pop", "").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Index should rank albums sharing more musicians with the other matches first")
+    public void shouldRankBySharedMusicians() {
+        // Belonging shares Keith with Köln and Jan with Magico, Köln is ranked before Magico by year
+        assertEquals(Lists.newArrayList(belonging, koln, magico), index.mostSimilar(3, "Jazz", null));
+        assertEquals(Lists.newArrayList(belonging), index.mostSimilar(1, "Jazz", ""));
+    }
+
+    @Test
+    @DisplayName("Removed or updated albums should no longer match their old postings")
+    public void shouldFollowUpdatesAndRemovals() {
+        index.remove(koln);
+        assertEquals(Lists.newArrayList(belonging), index.mostSimilar(10, "Jazz", "Keith Jarrett"));
+
+        tabula.setGenre("Jazz");
+        index.add(tabula);
+        assertEquals(3, index.size());
+        assertTrue(index.mostSimilar(10, "Classical", "").isEmpty());
+        assertTrue(index.mostSimilar(10, "Jazz", "Keith Jarrett").contains(tabula));
+    }
+
+    @Test
+    @DisplayName("Re-adding and replacing albums should reuse ordinals instead of growing the index")
+    public void shouldReuseOrdinals() {
+        for (int i = 0; i < 1000; i++) {
+            koln.setSales(i);
+            index.add(koln);
+        }
+        assertEquals(4, index.size());
+        assertEquals(4, index.capacity());
+
+        // a changed genre moves the album to other postings under the same ordinal
+        koln.setGenre("Classical");
+        index.add(koln);
+        assertEquals(4, index.capacity());
+        assertEquals(Lists.newArrayList(koln, tabula), index.mostSimilar(10, "Classical", "Keith Jarrett"));
+        assertFalse(index.mostSimilar(10, "Jazz", "Keith Jarrett").contains(koln));
+
+        index.remove(belonging);
+        Album nude = album(1972, "ECM 1017", "Facing You", "Jazz", keith);
+        index.add(nude);
+        assertEquals(4, index.capacity());
+        assertEquals(Lists.newArrayList(nude), index.mostSimilar(10, "Jazz", "Keith Jarrett"));
+    }
+}
@@ -0,0 +1,62 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.AsyncDAO;
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.model.Album;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AsyncECMMinerUnitTest {
+    private DAO dao;
+    private ThreadPoolExecutor executor;
+    private AsyncECMMiner asyncMiner;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(DAO.class);
+        executor = AsyncDAO.boundedExecutor("async-miner", 2, 4);
+        asyncMiner = new AsyncECMMiner(new ECMMiner(dao), executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Queries should be answered through futures like the blocking ones")
+    public void shouldAnswerQueriesAsynchronously() throws Exception {
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        koln.setSales(3500000);
+        belonging.setSales(200000);
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, belonging));
+
+        CompletableFuture<List<Album>> selling = asyncMiner.bestKSellingAlbums(1);
+        CompletableFuture<List<Integer>> years = asyncMiner.busiestYears(2);
+
+        assertEquals(Lists.newArrayList(koln), selling.get(10, TimeUnit.SECONDS));
+        assertEquals(2, years.get(10, TimeUnit.SECONDS).size());
+    }
+
+    @Test
+    @DisplayName("Invalid arguments should fail the future with IllegalArgumentException")
+    public void shouldFailFutureOnInvalidArguments() {
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> asyncMiner.mostSocialMusicians(0).get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+}
@@ -0,0 +1,64 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollaborationGraphUnitTest {
+    private Musician keith;
+    private Musician jan;
+    private Musician charlie;
+    private Musician arvo;
+    private CollaborationGraph graph;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        charlie = new Musician("Charlie Haden");
+        arvo = new Musician("Arvo Part");
+
+        List<Album> albums = Lists.newArrayList(
+                album(1975, "ECM 1064/65", "The Köln Concert", keith),
+                album(1974, "ECM 1050", "Belonging", keith, jan),
+                album(1974, "ECM 1049", "Luminessence", keith, jan, jan),
+                album(1979, "ECM 1151", "Magico", jan, charlie),
+                album(1984, "ECM 1275", "Tabula Rasa", arvo));
+        graph = CollaborationGraph.of(albums);
+    }
+
+    private static Album album(int year, String recordNumber, String name, Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    @Test
+    @DisplayName("Degree should count distinct collaborators, not shared albums")
+    public void shouldCountDistinctCollaborators() {
+        assertEquals(4, graph.musicianCount());
+        assertEquals(1, graph.degree(keith));
+        assertEquals(2, graph.degree(jan));
+        assertEquals(1, graph.degree(charlie));
+        assertEquals(0, graph.degree(arvo));
+        assertEquals(-1, graph.degree(new Musician("Pat Metheny")));
+    }
+
+    @Test
+    @DisplayName("Parallel degrees should agree with single musician lookups")
+    public void shouldComputeSameDegreesInParallel() {
+        int[] degrees = graph.degrees();
+        for (int id = 0; id < graph.musicianCount(); id++) {
+            Musician musician = graph.musician(id);
+            assertEquals(degrees[id], graph.degree(musician));
+        }
+        assertEquals(2, graph.degree(jan));
+    }
+}
@@ -884,4 +884,53 @@ class ECMMinerIntegrationTest {
         assertEquals(1, albumTest.size());
         assertTrue(albumTest.get(0).getAlbumName().equals("b"));
     }
+
+    @Test
+    @DisplayName("Streaming should give the same answers as loading, relationships included")
+    public void shouldAnswerAlikeWhenStreaming() {
+        Musician keith = new Musician("Keith Jarrett");
+        Musician jan = new Musician("Jan Garbarek");
+        Musician charlie = new Musician("Charlie Haden");
+        Musician egberto = new Musician("Egberto Gismonti");
+        Album belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        Album koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        koln.setRating(5);
+        Album magico = new Album(1979, "ECM 1151", "Magico");
+        magico.setFeaturedMusicians(Lists.newArrayList(jan, charlie, egberto));
+        Album arbour = new Album(1977, "ECM 1101", "Arbour Zena");
+        arbour.setFeaturedMusicians(Lists.newArrayList(keith, charlie));
+        arbour.setRating(4);
+        for (Album album : Lists.newArrayList(belonging, koln, magico, arbour))
+            album.setGenre("Jazz");
+        keith.setAlbums(Sets.newHashSet(belonging, koln, arbour));
+        jan.setAlbums(Sets.newHashSet(belonging, magico));
+        charlie.setAlbums(Sets.newHashSet(magico, arbour));
+        egberto.setAlbums(Sets.newHashSet(magico));
+        dao.createOrUpdateAll(Lists.newArrayList(keith, jan, charlie, egberto));
+        dao.createOrUpdateAll(Lists.newArrayList(belonging, koln, magico, arbour));
+        // the links are looked up by musician, which must not lead back to itself
+        dao.createOrUpdateAll(Lists.newArrayList(
+                new MusicianInstrument(new Musician("Keith Jarrett"),
+                        Sets.newHashSet(new MusicalInstrument("Piano"), new MusicalInstrument("Soprano Saxophone"))),
+                new MusicianInstrument(new Musician("Jan Garbarek"), Sets.newHashSet(new MusicalInstrument("Tenor Saxophone"))),
+                new MusicianInstrument(new Musician("Charlie Haden"), Sets.newHashSet(new MusicalInstrument("Bass")))));
+
+        // pooled sessions, so no relationship is left over in the mapping context of a page
+        Neo4jDAO pooled = new Neo4jDAO(sessionFactory, 2);
+        ECMMiner loading = new ECMMiner(pooled);
+        ECMMiner streaming = new ECMMiner(pooled);
+        streaming.setStreamingPageSize(2);
+        assertEquals(Lists.newArrayList(keith), streaming.mostProlificMusicians(1, -1, -1));
+        assertEquals(loading.mostProlificMusicians(4, 1975, 1980), streaming.mostProlificMusicians(4, 1975, 1980));
+        assertEquals(Lists.newArrayList(keith), streaming.mostTalentedMusicians(1));
+        assertEquals(loading.mostTalentedMusicians(4), streaming.mostTalentedMusicians(4));
+        assertEquals(Lists.newArrayList(charlie, jan), streaming.mostSocialMusicians(2));
+        assertEquals(loading.mostSocialMusicians(4), streaming.mostSocialMusicians(4));
+        assertEquals(Lists.newArrayList(koln, arbour), streaming.musiciansHighestRatedAlbums("Keith Jarrett", 2));
+        assertEquals(loading.musiciansHighestRatedAlbums("Charlie Haden", 4), streaming.musiciansHighestRatedAlbums("Charlie Haden", 4));
+        assertEquals(loading.mostSimilarAlbums(4, "Jazz", "Jan Garbarek"), streaming.mostSimilarAlbums(4, "Jazz", "Jan Garbarek"));
+        assertEquals(2, streaming.mostSimilarAlbums(4, "Jazz", "Jan Garbarek").size());
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package allaboutecm.mining;
 
 import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.IntProjection;
 import allaboutecm.dataaccess.neo4j.Neo4jDAO;
 import allaboutecm.model.Album;
 import allaboutecm.model.MusicalInstrument;
@@ -76,6 +77,22 @@ class ECMMinerUnitTest {
         assertEquals(3, results.size());
     }
 
+    @Test
+    @DisplayName("Most Prolific Musicians should return exactly k musicians when counts are tied")
+    public void shouldReturnExactlyKMusiciansWhenCountsAreTied() {
+        Musician mus1 = new Musician("Keith Jarrett");
+        Musician mus2 = new Musician("Adale");
+        Musician mus3 = new Musician("Lady");
+        mus1.setAlbums(Sets.newHashSet(new Album(1975, "ECM 1064/65", "The Köln Concert")));
+        mus2.setAlbums(Sets.newHashSet(new Album(1979, "12", "Rolling")));
+        mus3.setAlbums(Sets.newHashSet(new Album(1989, "3", "Animals")));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(mus1, mus2, mus3));
+
+        List<Musician> results = ecmMiner.mostProlificMusicians(2, -1, -1);
+
+        assertEquals(Lists.newArrayList(mus2, mus1), results);
+    }
+
     @ParameterizedTest
     @ValueSource(ints = {0,-1,-2,-3})
     @DisplayName("When mining the most prolific musicians the output can not be zero or less that zero")
@@ -355,6 +372,20 @@ class ECMMinerUnitTest {
         assertTrue(albumTest.get(2).getAlbumName().equals("Division Bell"));
     }
 
+    @Test
+    @DisplayName("Best selling albums should return exactly k albums when sales are tied")
+    public void shouldReturnExactlyKBestSellingAlbumsWhenSalesAreTied(){
+        Album album = new Album(1973,"1","The Dark Side of the Moon");
+        Album album1 = new Album(1979,"2","Animals");
+        Album album2 = new Album(1994,"3","Division Bell");
+        album.setSales(100000);
+        album1.setSales(100000);
+        album2.setSales(100000);
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(album, album1, album2));
+        List<Album> albumTest = ecmMiner.bestKSellingAlbums(2);
+        assertEquals(Lists.newArrayList(album, album1), albumTest);
+    }
+
     //Below are all of the tests for mostTalentedMusicians method
     @Test
     @DisplayName("Most Talented Musicians should throw IllegalException If k is 0")
@@ -732,4 +763,62 @@ class ECMMinerUnitTest {
         assertTrue(albumTest.get(0).getName().equals("Lady Gaga"));
     }
    
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Most social musician should count distinct collaborators rather than albums")
+    public void shouldRankMostSocialMusicianByDistinctCollaborators(){
+        Musician musician = new Musician("Adele");
+        Musician musician1 = new Musician("David Gilmour");
+        Musician musician2 = new Musician("Lady Gaga");
+        Musician musician3 = new Musician("Roger Waters");
+        Album album = new Album(2010,"1","a");
+        Album album1 = new Album(2011,"2","b");
+        Album album2 = new Album(2012,"3","c");
+        Album album3 = new Album(2013,"4","d");
+        album.setFeaturedMusicians(Lists.newArrayList(musician, musician1));
+        album1.setFeaturedMusicians(Lists.newArrayList(musician, musician1));
+        album2.setFeaturedMusicians(Lists.newArrayList(musician, musician1));
+        album3.setFeaturedMusicians(Lists.newArrayList(musician2, musician1, musician3));
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(album, album1, album2, album3));
+        List<Musician> albumTest = ecmMiner.mostSocialMusicians(2);
+        assertEquals(Lists.newArrayList(musician1, musician2), albumTest);
+    }
+
+    @Test
+    @DisplayName("With projections on, best selling albums should only load the candidates of the top k")
+    public void shouldRankBestSellingAlbumsOnProjection() {
+        Album album = new Album(2010, "1", "a");
+        album.setSales(300);
+        when(dao.projectInt(Album.class, "sales")).thenReturn(new IntProjection(new long[]{1, 2, 3}, new int[]{300, 300, 10}));
+        when(dao.loadAll(Album.class, Lists.newArrayList(1L))).thenReturn(Lists.newArrayList(album));
+        ecmMiner.setProjecting(true);
+
+        // the tie at the first place goes to the smallest id
+        assertEquals(Lists.newArrayList(album), ecmMiner.bestKSellingAlbums(1));
+        verify(dao).loadAll(Album.class, Lists.newArrayList(1L));
+        verify(dao, never()).loadAll(Album.class);
+    }
+
+    @Test
+    @DisplayName("With projections on, busiest years should be counted from the projected release years")
+    public void shouldCountBusiestYearsOnProjection() {
+        when(dao.projectInt(Album.class, "releaseYear")).thenReturn(new IntProjection(new long[]{1, 2, 3}, new int[]{1999, 2005, 2005}));
+        ecmMiner.setProjecting(true);
+
+        assertEquals(Lists.newArrayList(2005, 1999), ecmMiner.busiestYears(2));
+        verify(dao, never()).loadAll(any());
+    }
+
+    @Test
+    @DisplayName("Reading through the DAO should prefetch the relationships a query reads in one call per class")
+    public void shouldPrefetchRelationshipsOfLoadedEntities() {
+        Set<Musician> musicians = Sets.newHashSet(new Musician("Keith Jarrett"));
+        when(dao.loadAll(Musician.class)).thenReturn(musicians);
+
+        ecmMiner.mostProlificMusicians(1, -1, -1);
+        ecmMiner.topKRatedMusicians(1);
+
+        verify(dao, times(1)).prefetch(Musician.class, musicians, "albums");
+        verify(dao, times(2)).loadAll(Musician.class);
+    }
+}
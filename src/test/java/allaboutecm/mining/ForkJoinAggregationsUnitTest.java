@@ -0,0 +1,114 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ForkJoinAggregationsUnitTest {
+    private DAO dao;
+    private ECMMiner sequential;
+    private ForkJoinPool pool;
+    private ForkJoinAggregations parallel;
+    private List<Album> albums;
+    private List<Musician> musicians;
+    private List<MusicianInstrument> musicianInstruments;
+
+    @BeforeEach
+    public void setUp() {
+        // a synthetic catalog with many ties, so the tie breaking is exercised across chunks
+        Random random = new Random(42);
+        musicians = Lists.newArrayList();
+        for (int i = 0; i < 60; i++) {
+            Musician musician = new Musician("Musician " + i);
+            musician.setRating(1 + random.nextInt(5));
+            musicians.add(musician);
+        }
+        albums = Lists.newArrayList();
+        for (int i = 0; i < 500; i++) {
+            Album album = new Album(1970 + random.nextInt(40), "ECM " + i, "Album " + i);
+            album.setGenre(random.nextBoolean() ? "Jazz" : "Classical");
+            album.setSales(random.nextInt(10) * 1000);
+            album.setRating(1 + random.nextInt(5));
+            List<Musician> featured = Lists.newArrayList();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                Musician musician = musicians.get(random.nextInt(musicians.size()));
+                featured.add(musician);
+                musician.getAlbums().add(album);
+            }
+            album.setFeaturedMusicians(featured);
+            albums.add(album);
+        }
+        musicianInstruments = Lists.newArrayList();
+        for (int i = 0; i < 150; i++) {
+            musicianInstruments.add(new MusicianInstrument(musicians.get(random.nextInt(musicians.size())),
+                    Sets.newHashSet(new MusicalInstrument("Instrument " + random.nextInt(8)))));
+        }
+
+        dao = mock(Neo4jDAO.class);
+        when(dao.loadAll(Album.class)).thenReturn(albums);
+        when(dao.loadAll(Musician.class)).thenReturn(musicians);
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(musicianInstruments);
+        sequential = new ECMMiner(dao);
+
+        pool = new ForkJoinPool(4);
+        // small chunks so that every aggregation is split many times
+        parallel = new ForkJoinAggregations(pool, 7);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Parallel aggregations should give the same answers as the sequential ones")
+    public void shouldMatchSequentialAnswers() {
+        assertEquals(sequential.mostProlificMusicians(10, -1, -1), parallel.mostProlificMusicians(musicians, 10, -1, -1));
+        assertEquals(sequential.mostProlificMusicians(10, 1980, 1990), parallel.mostProlificMusicians(musicians, 10, 1980, 1990));
+        assertEquals(sequential.mostTalentedMusicians(10), parallel.mostTalentedMusicians(musicianInstruments, 10));
+        assertEquals(sequential.mostSocialMusicians(10), parallel.mostSocialMusicians(albums, 10));
+        assertEquals(sequential.busiestYears(10), parallel.busiestYears(albums, 10));
+        assertEquals(sequential.bestKSellingAlbums(10), parallel.bestKSellingAlbums(albums, 10));
+        assertEquals(sequential.topKRatedAlbums(10), parallel.topKRatedAlbums(albums, 10));
+        assertEquals(sequential.topKRatedMusicians(10), parallel.topKRatedMusicians(musicians, 10));
+        assertEquals(sequential.musiciansHighestRatedAlbums("Musician 3", 5),
+                parallel.musiciansHighestRatedAlbums(albums, "Musician 3", 5));
+    }
+
+    @Test
+    @DisplayName("The parallel mode should be chosen per miner")
+    public void shouldBeChosenPerMiner() {
+        ECMMiner miner = new ECMMiner(dao);
+        miner.setForkJoinPool(pool);
+
+        assertSame(pool, miner.getForkJoinPool());
+        assertNull(sequential.getForkJoinPool());
+        assertEquals(sequential.bestKSellingAlbums(20), miner.bestKSellingAlbums(20));
+
+        miner.setForkJoinPool(null);
+        assertNull(miner.getForkJoinPool());
+    }
+
+    @Test
+    @DisplayName("Parallel aggregations should reject invalid settings")
+    public void shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new ForkJoinAggregations(null, 7));
+        assertThrows(IllegalArgumentException.class, () -> new ForkJoinAggregations(pool, 0));
+    }
+}
@@ -0,0 +1,251 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.memory.InMemoryDAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MiningAggregatesUnitTest {
+    private DAO dao;
+    private ECMMiner ecmMiner;
+    private ECMMiner readThrough;
+    private Set<Album> albums;
+    private Set<Musician> musicians;
+    private Set<MusicianInstrument> musicianInstruments;
+    private Musician keith;
+    private Musician jan;
+    private Musician charlie;
+    private Album koln;
+    private Album belonging;
+    private MusicianInstrument piano;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(Neo4jDAO.class);
+        ecmMiner = new ECMMiner(dao);
+        readThrough = new ECMMiner(dao);
+
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        charlie = new Musician("Charlie Haden");
+        keith.setRating(5);
+        jan.setRating(4);
+        charlie.setRating(4);
+
+        koln = album(1975, "ECM 1064/65", "The Köln Concert", 3500000, 5, keith);
+        belonging = album(1974, "ECM 1050", "Belonging", 200000, 4, keith, jan);
+        keith.setAlbums(Sets.newHashSet(koln, belonging));
+        jan.setAlbums(Sets.newHashSet(belonging));
+        piano = new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")));
+
+        albums = Sets.newHashSet(koln, belonging);
+        musicians = Sets.newHashSet(keith, jan, charlie);
+        musicianInstruments = Sets.newHashSet(piano,
+                new MusicianInstrument(jan, Sets.newHashSet(new MusicalInstrument("Saxophone"))));
+        when(dao.loadAll(Album.class)).thenAnswer(invocation -> Sets.newHashSet(albums));
+        when(dao.loadAll(Musician.class)).thenAnswer(invocation -> Sets.newHashSet(musicians));
+        when(dao.loadAll(MusicianInstrument.class)).thenAnswer(invocation -> Sets.newHashSet(musicianInstruments));
+    }
+
+    private static Album album(int year, String recordNumber, String name, int sales, int rating, Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setGenre("Jazz");
+        album.setSales(sales);
+        album.setRating(rating);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    private void assertSameAnswers() {
+        assertEquals(readThrough.mostProlificMusicians(3, -1, -1), ecmMiner.mostProlificMusicians(3, -1, -1));
+        assertEquals(readThrough.mostProlificMusicians(3, 1975, 1980), ecmMiner.mostProlificMusicians(3, 1975, 1980));
+        assertEquals(readThrough.mostTalentedMusicians(3), ecmMiner.mostTalentedMusicians(3));
+        assertEquals(readThrough.mostSocialMusicians(3), ecmMiner.mostSocialMusicians(3));
+        assertEquals(readThrough.busiestYears(3), ecmMiner.busiestYears(3));
+        assertEquals(readThrough.mostSimilarAlbums(3, "Jazz", ""), ecmMiner.mostSimilarAlbums(3, "Jazz", ""));
+        assertEquals(readThrough.bestKSellingAlbums(3), ecmMiner.bestKSellingAlbums(3));
+        assertEquals(readThrough.topKRatedAlbums(3), ecmMiner.topKRatedAlbums(3));
+        assertEquals(readThrough.topKRatedMusicians(3), ecmMiner.topKRatedMusicians(3));
+        assertEquals(readThrough.musiciansHighestRatedAlbums("Keith Jarrett", 3),
+                ecmMiner.musiciansHighestRatedAlbums("Keith Jarrett", 3));
+    }
+
+    @Test
+    @DisplayName("Attached aggregates should register with the DAO and answer like it")
+    public void shouldAnswerLikeTheDAOOnceAttached() {
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+
+        verify(dao).addChangeListener(aggregates);
+        assertSame(aggregates, ecmMiner.attachAggregates());
+        assertSameAnswers();
+    }
+
+    @Test
+    @DisplayName("Saved entities should be reflected without reloading the store")
+    public void shouldFollowSaves() {
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+        clearInvocations(dao);
+
+        Album magico = album(1979, "ECM 1151", "Magico", 5000000, 3, jan, charlie);
+        albums.add(magico);
+        aggregates.onSave(magico);
+        assertEquals(Lists.newArrayList(magico), ecmMiner.bestKSellingAlbums(1));
+        assertEquals(Lists.newArrayList(jan), ecmMiner.mostSocialMusicians(1));
+        verify(dao, never()).loadAll(any());
+
+        // an album saved again replaces what was counted for it before
+        koln.setSales(6000000);
+        koln.setFeaturedMusicians(Lists.newArrayList(keith, charlie));
+        aggregates.onSave(koln);
+        charlie.setAlbums(Sets.newHashSet(koln, magico));
+        aggregates.onSave(charlie);
+        MusicianInstrument bass = new MusicianInstrument(charlie,
+                Sets.newHashSet(new MusicalInstrument("Bass"), new MusicalInstrument("Piano")));
+        musicianInstruments.add(bass);
+        aggregates.onSave(bass);
+        aggregates.onSave(bass);
+
+        assertSameAnswers();
+    }
+
+    @Test
+    @DisplayName("Deleted entities should no longer be counted")
+    public void shouldFollowDeletes() {
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+
+        albums.remove(belonging);
+        aggregates.onDelete(belonging);
+        musicianInstruments.remove(piano);
+        aggregates.onDelete(piano);
+        musicians.remove(charlie);
+        aggregates.onDelete(charlie);
+
+        assertEquals(Lists.newArrayList(1975), ecmMiner.busiestYears(5));
+        assertEquals(Lists.newArrayList(jan), ecmMiner.mostTalentedMusicians(5));
+        assertEquals(Lists.newArrayList(keith), ecmMiner.mostSocialMusicians(5));
+        assertEquals(Lists.newArrayList(koln), ecmMiner.topKRatedAlbums(5));
+        assertEquals(Lists.newArrayList(keith, jan), ecmMiner.topKRatedMusicians(5));
+    }
+
+    @Test
+    @DisplayName("Detached aggregates should stop listening and queries read through again")
+    public void shouldReadThroughOnceDetached() {
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+        ecmMiner.detachAggregates();
+
+        verify(dao).removeChangeListener(aggregates);
+        clearInvocations(dao);
+        ecmMiner.busiestYears(1);
+        verify(dao).loadAll(Album.class);
+    }
+
+    @Test
+    @DisplayName("Aggregates made stale by a bulk delete should be rebuilt before the next query")
+    public void shouldRebuildAfterBulkDelete() {
+        MiningAggregates attached = ecmMiner.attachAggregates();
+        assertEquals(Lists.newArrayList(koln), ecmMiner.bestKSellingAlbums(1));
+
+        albums.remove(koln);
+        attached.onDeleteAll(Album.class);
+        assertTrue(attached.isStale());
+
+        assertEquals(Lists.newArrayList(belonging), ecmMiner.bestKSellingAlbums(1));
+        verify(dao).removeChangeListener(attached);
+        verify(dao, times(2)).loadAll(Album.class);
+    }
+
+    @Test
+    @DisplayName("A link saved again with other instruments should replace what was counted for it")
+    public void shouldReplaceChangedLinks() {
+        InMemoryDAO store = new InMemoryDAO();
+        MusicianInstrument keithPlays = new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")));
+        store.createOrUpdateAll(Lists.newArrayList(keithPlays,
+                new MusicianInstrument(jan, Sets.newHashSet(new MusicalInstrument("Saxophone")))));
+        ECMMiner attached = new ECMMiner(store);
+        attached.attachAggregates();
+
+        keithPlays.setMusicalInstruments(Sets.newHashSet(new MusicalInstrument("Organ")));
+        store.createOrUpdate(keithPlays);
+        assertEquals(Lists.newArrayList(jan, keith), attached.mostTalentedMusicians(2));
+        assertEquals(new ECMMiner(store).mostTalentedMusicians(2), attached.mostTalentedMusicians(2));
+
+        keithPlays.setMusician(jan);
+        store.createOrUpdate(keithPlays);
+        assertEquals(Lists.newArrayList(jan), attached.mostTalentedMusicians(2));
+
+        store.delete(keithPlays);
+        assertEquals(new ECMMiner(store).mostTalentedMusicians(2), attached.mostTalentedMusicians(2));
+    }
+
+    @Test
+    @DisplayName("Musicians created by the save of a related entity should be counted")
+    public void shouldFollowCascadedSaves() {
+        InMemoryDAO store = new InMemoryDAO();
+        ECMMiner attached = new ECMMiner(store);
+        attached.attachAggregates();
+
+        store.createOrUpdate(koln);
+        assertEquals(Lists.newArrayList(keith), attached.topKRatedMusicians(1));
+        assertEquals(new ECMMiner(store).topKRatedMusicians(1), attached.topKRatedMusicians(1));
+    }
+
+    @Test
+    @DisplayName("A changed release year should be counted for the musicians of the album")
+    public void shouldFollowChangedReleaseYears() {
+        koln.setId(1L);
+        belonging.setId(2L);
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+
+        // the album as loaded again after its release year was changed in the store
+        Album moved = album(1985, "ECM 1050", "Belonging", 200000, 4, keith, jan);
+        moved.setId(belonging.getId());
+        albums.remove(belonging);
+        albums.add(moved);
+        keith.setAlbums(Sets.newHashSet(koln, moved));
+        jan.setAlbums(Sets.newHashSet(moved));
+        aggregates.onSave(moved);
+        assertEquals(Lists.newArrayList(jan, keith), ecmMiner.mostProlificMusicians(2, 1980, 1990));
+        assertEquals(Lists.newArrayList(1975, 1985), ecmMiner.busiestYears(3));
+        assertSameAnswers();
+
+        albums.remove(moved);
+        aggregates.onDelete(moved);
+        keith.setAlbums(Sets.newHashSet(koln));
+        // loaded again, jan has no album left
+        Musician janWithoutAlbums = new Musician("Jan Garbarek");
+        janWithoutAlbums.setRating(4);
+        musicians.remove(jan);
+        musicians.add(janWithoutAlbums);
+        assertSameAnswers();
+    }
+
+    @Test
+    @DisplayName("A deleted musician should no longer be indexed with its albums")
+    public void shouldForgetDeletedMusiciansOfAlbums() {
+        MiningAggregates aggregates = ecmMiner.attachAggregates();
+        assertEquals(Lists.newArrayList(belonging), ecmMiner.musiciansHighestRatedAlbums("Jan Garbarek", 3));
+
+        musicians.remove(jan);
+        aggregates.onDelete(jan);
+        assertTrue(ecmMiner.musiciansHighestRatedAlbums("Jan Garbarek", 3).isEmpty());
+        assertTrue(ecmMiner.mostSimilarAlbums(3, "Jazz", "Jan Garbarek").isEmpty());
+        assertEquals(Lists.newArrayList(koln, belonging), ecmMiner.musiciansHighestRatedAlbums("Keith Jarrett", 3));
+
+        // saved again, the album features the musician once more
+        aggregates.onSave(belonging);
+        assertEquals(Lists.newArrayList(belonging), ecmMiner.musiciansHighestRatedAlbums("Jan Garbarek", 3));
+    }
+}
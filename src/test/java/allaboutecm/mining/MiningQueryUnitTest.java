@@ -0,0 +1,150 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MiningQueryUnitTest {
+    private DAO dao;
+    private ECMMiner ecmMiner;
+    private Musician keith;
+    private Musician jan;
+    private Album koln;
+    private Album belonging;
+    private Album tabula;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(Neo4jDAO.class);
+        ecmMiner = new ECMMiner(dao);
+
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        keith.setRating(5);
+        jan.setRating(3);
+        koln = album(1975, "ECM 1064/65", "The Köln Concert", "Jazz", 3500000, 5, keith);
+        belonging = album(1974, "ECM 1050", "Belonging", "Jazz", 200000, 4, keith, jan);
+        tabula = album(1984, "ECM 1275", "Tabula Rasa", "Classical", 500000, 5, keith);
+        keith.setAlbums(Sets.newHashSet(koln, belonging, tabula));
+        jan.setAlbums(Sets.newHashSet(belonging));
+
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, belonging, tabula));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith, jan));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(
+                new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")))));
+    }
+
+    private static Album album(int year, String recordNumber, String name, String genre, int sales, int rating,
+                               Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setGenre(genre);
+        album.setSales(sales);
+        album.setRating(rating);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    @Test
+    @DisplayName("A batch of album queries should load and scan the albums once")
+    public void shouldShareOneLoadOfTheAlbums() {
+        MiningQuery<List<Integer>> years = MiningQuery.busiestYears(2);
+        MiningQuery<List<Album>> selling = MiningQuery.bestKSellingAlbums(2);
+        MiningQuery<List<Album>> rated = MiningQuery.topKRatedAlbums(2);
+        MiningQuery<List<Album>> similar = MiningQuery.mostSimilarAlbums(3, "Jazz", "");
+        MiningQuery<List<Album>> ofKeith = MiningQuery.musiciansHighestRatedAlbums("Keith Jarrett", 2);
+
+        MiningResults results = ecmMiner.runBatch(Lists.newArrayList(years, selling, rated, similar, ofKeith));
+
+        verify(dao, times(1)).loadAll(Album.class);
+        verify(dao, never()).loadAll(Musician.class);
+        assertEquals(5, results.size());
+        assertEquals(ecmMiner.busiestYears(2), results.get(years));
+        assertEquals(ecmMiner.bestKSellingAlbums(2), results.get(selling));
+        assertEquals(ecmMiner.topKRatedAlbums(2), results.get(rated));
+        assertEquals(ecmMiner.mostSimilarAlbums(3, "Jazz", ""), results.get(similar));
+        assertEquals(ecmMiner.musiciansHighestRatedAlbums("Keith Jarrett", 2), results.get(ofKeith));
+    }
+
+    @Test
+    @DisplayName("Musician queries in a batch should answer like the single queries")
+    public void shouldAnswerMusicianQueries() {
+        MiningQuery<List<Musician>> prolific = MiningQuery.mostProlificMusicians(2, 1974, 1975);
+        MiningQuery<List<Musician>> talented = MiningQuery.mostTalentedMusicians(2);
+        MiningQuery<List<Musician>> social = MiningQuery.mostSocialMusicians(2);
+        MiningQuery<List<Musician>> rated = MiningQuery.topKRatedMusicians(1);
+
+        MiningResults results = ecmMiner.runBatch(Lists.newArrayList(prolific, talented, social, rated));
+
+        assertEquals(ecmMiner.mostProlificMusicians(2, 1974, 1975), results.get(prolific));
+        assertEquals(ecmMiner.mostTalentedMusicians(2), results.get(talented));
+        assertEquals(ecmMiner.mostSocialMusicians(2), results.get(social));
+        assertEquals(Lists.newArrayList(keith), results.get(rated));
+    }
+
+    @Test
+    @DisplayName("A batch should be answered from a published snapshot without loading")
+    public void shouldAnswerFromSnapshot() {
+        ecmMiner.refreshSnapshot();
+        clearInvocations(dao);
+        MiningQuery<List<Album>> selling = MiningQuery.bestKSellingAlbums(1);
+
+        assertEquals(Lists.newArrayList(koln), ecmMiner.runBatch(Lists.newArrayList(selling)).get(selling));
+        verifyNoInteractions(dao);
+    }
+
+    @Test
+    @DisplayName("Query arguments should be validated like the ECMMiner methods")
+    public void shouldValidateArguments() {
+        assertThrows(IllegalArgumentException.class, () -> MiningQuery.mostProlificMusicians(0, -1, -1));
+        assertThrows(IllegalArgumentException.class, () -> MiningQuery.mostProlificMusicians(1, 1990, 1980));
+        assertThrows(IllegalArgumentException.class, () -> MiningQuery.mostTalentedMusicians(-1));
+        assertThrows(IllegalArgumentException.class, () -> MiningQuery.mostSocialMusicians(0));
+
+        MiningQuery<List<Album>> none = MiningQuery.bestKSellingAlbums(0);
+        MiningResults results = ecmMiner.runBatch(Lists.newArrayList(none));
+        assertTrue(results.get(none).isEmpty());
+        verifyNoInteractions(dao);
+    }
+
+    @Test
+    @DisplayName("Reading the answer of a query outside of the batch should fail")
+    public void shouldRejectQueryOutsideOfBatch() {
+        MiningResults results = ecmMiner.runBatch(Lists.newArrayList(MiningQuery.busiestYears(1)));
+        assertThrows(IllegalArgumentException.class, () -> results.get(MiningQuery.busiestYears(1)));
+    }
+
+    @Test
+    @DisplayName("With a streaming page size queries should read pages from DAO.stream with the same answers")
+    public void shouldAnswerFromStreamedPages() {
+        List<Musician> prolific = ecmMiner.mostProlificMusicians(2, -1, -1);
+        List<Musician> social = ecmMiner.mostSocialMusicians(2);
+        List<Integer> years = ecmMiner.busiestYears(3);
+        List<Album> ofKeith = ecmMiner.musiciansHighestRatedAlbums("Keith Jarrett", 2);
+        clearInvocations(dao);
+
+        when(dao.stream(Album.class, 2)).thenAnswer(invocation -> Stream.of(koln, belonging, tabula));
+        when(dao.stream(Musician.class, 2)).thenAnswer(invocation -> Stream.of(keith, jan));
+        ecmMiner.setStreamingPageSize(2);
+
+        assertEquals(prolific, ecmMiner.mostProlificMusicians(2, -1, -1));
+        assertEquals(social, ecmMiner.mostSocialMusicians(2));
+        assertEquals(years, ecmMiner.busiestYears(3));
+        assertEquals(ofKeith, ecmMiner.musiciansHighestRatedAlbums("Keith Jarrett", 2));
+        verify(dao, never()).loadAll(any());
+        assertThrows(IllegalArgumentException.class, () -> ecmMiner.setStreamingPageSize(-1));
+    }
+}
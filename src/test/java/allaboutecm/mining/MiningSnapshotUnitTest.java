@@ -0,0 +1,176 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.DAO;
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class MiningSnapshotUnitTest {
+    private DAO dao;
+    private ECMMiner ecmMiner;
+    private Musician keith;
+    private Musician jan;
+    private Album koln;
+    private Album belonging;
+
+    @BeforeEach
+    public void setUp() {
+        dao = mock(Neo4jDAO.class);
+        ecmMiner = new ECMMiner(dao);
+
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        keith.setRating(5);
+        jan.setRating(4);
+
+        koln = new Album(1975, "ECM 1064/65", "The Köln Concert");
+        koln.setGenre("Jazz");
+        koln.setSales(3500000);
+        koln.setRating(5);
+        koln.setFeaturedMusicians(Lists.newArrayList(keith));
+        belonging = new Album(1974, "ECM 1050", "Belonging");
+        belonging.setGenre("Jazz");
+        belonging.setSales(200000);
+        belonging.setRating(4);
+        belonging.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        keith.setAlbums(Sets.newHashSet(koln, belonging));
+        jan.setAlbums(Sets.newHashSet(belonging));
+
+        MusicianInstrument piano = new MusicianInstrument(keith, Sets.newHashSet(new MusicalInstrument("Piano")));
+        MusicianInstrument saxophone = new MusicianInstrument(jan, Sets.newHashSet(new MusicalInstrument("Saxophone"),
+                new MusicalInstrument("Flute")));
+
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, belonging));
+        when(dao.loadAll(Musician.class)).thenReturn(Sets.newHashSet(keith, jan));
+        when(dao.loadAll(MusicianInstrument.class)).thenReturn(Sets.newHashSet(piano, saxophone));
+    }
+
+    @Test
+    @DisplayName("Queries should read through the DAO until a snapshot is published")
+    public void shouldReadThroughWithoutSnapshot() {
+        assertNull(ecmMiner.getSnapshot());
+        ecmMiner.busiestYears(1);
+        ecmMiner.busiestYears(1);
+        verify(dao, times(2)).loadAll(Album.class);
+    }
+
+    @Test
+    @DisplayName("Snapshot answers should match the answers read through the DAO")
+    public void shouldAnswerLikeTheDAO() {
+        ECMMiner readThrough = new ECMMiner(dao);
+        ecmMiner.refreshSnapshot();
+
+        assertEquals(readThrough.mostProlificMusicians(2, -1, -1), ecmMiner.mostProlificMusicians(2, -1, -1));
+        assertEquals(readThrough.mostTalentedMusicians(2), ecmMiner.mostTalentedMusicians(2));
+        assertEquals(readThrough.mostSocialMusicians(2), ecmMiner.mostSocialMusicians(2));
+        assertEquals(readThrough.busiestYears(2), ecmMiner.busiestYears(2));
+        assertEquals(readThrough.mostSimilarAlbums(2, "Jazz", "Keith Jarrett"), ecmMiner.mostSimilarAlbums(2, "Jazz", "Keith Jarrett"));
+        assertEquals(readThrough.bestKSellingAlbums(2), ecmMiner.bestKSellingAlbums(2));
+        assertEquals(readThrough.topKRatedAlbums(1), ecmMiner.topKRatedAlbums(1));
+        assertEquals(readThrough.topKRatedMusicians(2), ecmMiner.topKRatedMusicians(2));
+        assertEquals(readThrough.musiciansHighestRatedAlbums("Jan Garbarek", 2), ecmMiner.musiciansHighestRatedAlbums("Jan Garbarek", 2));
+    }
+
+    @Test
+    @DisplayName("Queries should not touch the DAO after a snapshot is published")
+    public void shouldNotLoadAfterRefresh() {
+        ecmMiner.refreshSnapshot();
+        clearInvocations(dao);
+
+        assertEquals(Lists.newArrayList(koln), ecmMiner.bestKSellingAlbums(1));
+        assertEquals(Lists.newArrayList(jan), ecmMiner.mostTalentedMusicians(1));
+        verifyNoInteractions(dao);
+    }
+
+    @Test
+    @DisplayName("A refresh should replace the snapshot, and clearing it should read through again")
+    public void shouldSwapSnapshotOnRefresh() {
+        MiningSnapshot first = ecmMiner.refreshSnapshot();
+        Album magico = new Album(1979, "ECM 1151", "Magico");
+        magico.setSales(5000000);
+        when(dao.loadAll(Album.class)).thenReturn(Sets.newHashSet(koln, belonging, magico));
+
+        assertEquals(Lists.newArrayList(koln), ecmMiner.bestKSellingAlbums(1));
+        MiningSnapshot second = ecmMiner.refreshSnapshot();
+        assertNotSame(first, second);
+        assertSame(second, ecmMiner.getSnapshot());
+        assertEquals(Lists.newArrayList(magico), ecmMiner.bestKSellingAlbums(1));
+
+        ecmMiner.clearSnapshot();
+        assertNull(ecmMiner.getSnapshot());
+        assertEquals(3, ecmMiner.busiestYears(5).size());
+    }
+
+    @Test
+    @DisplayName("Snapshot contents should be read-only")
+    public void shouldBeReadOnly() {
+        MiningSnapshot snapshot = ecmMiner.refreshSnapshot();
+        assertEquals(2, snapshot.getAlbums().size());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getAlbums().clear());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getMusicians().add(keith));
+
+        // the answers are copies, changing them does not change the snapshot
+        ecmMiner.topKRatedAlbums(2).clear();
+        assertEquals(2, ecmMiner.topKRatedAlbums(2).size());
+    }
+
+    @Test
+    @DisplayName("An asynchronous refresh should publish the snapshot it built")
+    public void shouldRefreshAsynchronously() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            MiningSnapshot snapshot = ecmMiner.refreshSnapshotAsync(executor).get(10, TimeUnit.SECONDS);
+            assertSame(snapshot, ecmMiner.getSnapshot());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Scheduling a refresh should reject a non-positive period")
+    public void shouldRejectNonPositivePeriod() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            assertThrows(IllegalArgumentException.class,
+                    () -> ecmMiner.scheduleSnapshotRefresh(executor, 0, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Changing an entity after the snapshot is built should not change its answers")
+    public void shouldRankOnValuesCopiedAtBuild() {
+        ecmMiner.refreshSnapshot();
+        koln.setSales(10);
+        keith.setRating(1);
+
+        List<Album> bestSelling = ecmMiner.bestKSellingAlbums(2);
+        assertEquals(Lists.newArrayList(koln, belonging), bestSelling);
+        assertEquals(3500000, bestSelling.get(0).getSales());
+        assertNotSame(koln, bestSelling.get(0));
+        assertEquals(Lists.newArrayList(keith, jan), ecmMiner.topKRatedMusicians(2));
+        assertEquals(5, ecmMiner.topKRatedMusicians(1).get(0).getRating());
+        assertThrows(UnsupportedOperationException.class, () -> bestSelling.get(0).getFeaturedMusicians().clear());
+
+        ecmMiner.refreshSnapshot();
+        assertEquals(Lists.newArrayList(belonging, koln), ecmMiner.bestKSellingAlbums(2));
+        assertEquals(Lists.newArrayList(jan, keith), ecmMiner.topKRatedMusicians(2));
+    }
+}
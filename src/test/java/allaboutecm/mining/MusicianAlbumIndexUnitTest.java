@@ -0,0 +1,61 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MusicianAlbumIndexUnitTest {
+    private Musician keith;
+    private Musician jan;
+    private Album koln;
+    private Album belonging;
+    private Album luminessence;
+    private MusicianAlbumIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+
+        koln = album(1975, "ECM 1064/65", "The Köln Concert", 5, keith);
+        belonging = album(1974, "ECM 1050", "Belonging", 4, keith, jan);
+        luminessence = album(1974, "ECM 1049", "Luminessence", 4, keith, jan);
+
+        index = MusicianAlbumIndex.of(Lists.newArrayList(belonging, koln, luminessence));
+    }
+
+    private static Album album(int year, String recordNumber, String name, int rating, Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setRating(rating);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    @Test
+    @DisplayName("Index should return a musicians albums from the highest rated, ties by record number")
+    public void shouldOrderAlbumsByRatingThenNaturalKey() {
+        assertEquals(Lists.newArrayList(koln, luminessence, belonging), index.highestRated("Keith Jarrett", 5));
+        assertEquals(Lists.newArrayList(luminessence), index.highestRated("Jan Garbarek", 1));
+        assertTrue(index.highestRated("Arvo Part", 3).isEmpty());
+        assertTrue(index.highestRated("Keith Jarrett", 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Saving an album again should move it to its new rating position")
+    public void shouldRepositionUpdatedAlbum() {
+        koln.setRating(1);
+        koln.setFeaturedMusicians(Lists.newArrayList(keith, jan));
+        index.add(koln);
+
+        assertEquals(Lists.newArrayList(luminessence, belonging, koln), index.highestRated("Keith Jarrett", 5));
+        assertEquals(Lists.newArrayList(luminessence, belonging, koln), index.highestRated("Jan Garbarek", 5));
+
+        index.remove(luminessence);
+        assertEquals(Lists.newArrayList(belonging, koln), index.highestRated("Jan Garbarek", 5));
+    }
+}
@@ -0,0 +1,217 @@
+package allaboutecm.mining;
+
+import allaboutecm.dataaccess.neo4j.Neo4jDAO;
+import allaboutecm.model.Album;
+import allaboutecm.model.MusicalInstrument;
+import allaboutecm.model.Musician;
+import allaboutecm.model.MusicianInstrument;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.neo4j.ogm.config.Configuration;
+import org.neo4j.ogm.cypher.ComparisonOperator;
+import org.neo4j.ogm.cypher.Filter;
+import org.neo4j.ogm.cypher.Filters;
+import org.neo4j.ogm.session.Session;
+import org.neo4j.ogm.session.SessionFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the Cypher pushdown of Neo4jECMMiner answers the same as the in-JVM queries.
+ */
+class Neo4jECMMinerIntegrationTest {
+    private static Neo4jDAO dao;
+    private static Neo4jECMMiner ecmMiner;
+    private static Session session;
+    private static SessionFactory sessionFactory;
+
+    private Musician keith;
+    private Musician jan;
+    private Musician charlie;
+    private Musician arvo;
+
+    @BeforeAll
+    public static void setUp() {
+        // Impermanent embedded store
+        Configuration configuration = new Configuration.Builder().build();
+
+        sessionFactory = new SessionFactory(configuration, Musician.class.getPackage().getName());
+        session = sessionFactory.openSession();
+
+        dao = new Neo4jDAO(session);
+        ecmMiner = new Neo4jECMMiner(dao);
+    }
+
+    @BeforeEach
+    public void setUpEach() {
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        charlie = new Musician("Charlie Haden");
+        arvo = new Musician("Arvo Part");
+        keith.setRating(5);
+        jan.setRating(4);
+        charlie.setRating(3);
+        arvo.setRating(2);
+
+        Album koln = album(1975, "ECM 1064/65", "The Köln Concert", "Jazz", 3500000, 5, keith);
+        Album belonging = album(1974, "ECM 1050", "Belonging", "Jazz", 200000, 4, keith, jan);
+        Album luminessence = album(1974, "ECM 1049", "Luminessence", "Jazz", 100000, 3, keith, jan);
+        Album magico = album(1979, "ECM 1151", "Magico", "Jazz", 90000, 2, jan, charlie);
+        Album tabula = album(1984, "ECM 1275", "Tabula Rasa", "Classical", 300000, 1, keith, arvo);
+
+        for (Album album : Lists.newArrayList(koln, belonging, luminessence, magico, tabula))
+            dao.createOrUpdate(album);
+
+        // saved before the musicians point back to their albums
+        MusicalInstrument piano = new MusicalInstrument("Piano");
+        MusicalInstrument saxophone = new MusicalInstrument("Saxophone");
+        MusicalInstrument flute = new MusicalInstrument("Flute");
+        dao.createOrUpdate(new MusicianInstrument(keith, Sets.newHashSet(piano, saxophone)));
+        dao.createOrUpdate(new MusicianInstrument(jan, Sets.newHashSet(saxophone, flute, piano)));
+        dao.createOrUpdate(new MusicianInstrument(charlie, Sets.newHashSet(piano)));
+
+        keith.setAlbums(Sets.newHashSet(koln, belonging, luminessence, tabula));
+        jan.setAlbums(Sets.newHashSet(belonging, luminessence, magico));
+        charlie.setAlbums(Sets.newHashSet(magico));
+        arvo.setAlbums(Sets.newHashSet(tabula));
+        for (Musician musician : Lists.newArrayList(keith, jan, charlie, arvo))
+            dao.createOrUpdate(musician);
+    }
+
+    @AfterEach
+    public void tearDownEach() {
+        ecmMiner.setMode(Neo4jECMMiner.Mode.PUSHDOWN);
+        session.purgeDatabase();
+    }
+
+    @AfterAll
+    public static void tearDown() {
+        session.purgeDatabase();
+        session.clear();
+        sessionFactory.close();
+    }
+
+    private static Album album(int year, String recordNumber, String name, String genre, int sales, int rating,
+                               Musician... musicians) {
+        Album album = new Album(year, recordNumber, name);
+        album.setGenre(genre);
+        album.setSales(sales);
+        album.setRating(rating);
+        album.setFeaturedMusicians(Lists.newArrayList(musicians));
+        return album;
+    }
+
+    private static <T> void assertSameInBothModes(Supplier<List<T>> query) {
+        ecmMiner.setMode(Neo4jECMMiner.Mode.IN_JVM);
+        List<T> expected = query.get();
+        ecmMiner.setMode(Neo4jECMMiner.Mode.PUSHDOWN);
+        List<T> actual = query.get();
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("Mode should default to pushdown and reject null")
+    public void shouldDefaultToPushdownMode() {
+        assertEquals(Neo4jECMMiner.Mode.PUSHDOWN, new Neo4jECMMiner(dao).getMode());
+        assertThrows(IllegalArgumentException.class, () -> ecmMiner.setMode(null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 4, 10})
+    @DisplayName("Pushdown should answer the same as the in-JVM path for every ranked query")
+    public void shouldMatchInJvmResults(int k) {
+        assertSameInBothModes(() -> ecmMiner.mostProlificMusicians(k, -1, -1));
+        assertSameInBothModes(() -> ecmMiner.mostProlificMusicians(k, 1974, 1979));
+        assertSameInBothModes(() -> ecmMiner.mostTalentedMusicians(k));
+        assertSameInBothModes(() -> ecmMiner.mostSocialMusicians(k));
+        assertSameInBothModes(() -> ecmMiner.busiestYears(k));
+        assertSameInBothModes(() -> ecmMiner.bestKSellingAlbums(k));
+        assertSameInBothModes(() -> ecmMiner.topKRatedAlbums(k));
+        assertSameInBothModes(() -> ecmMiner.topKRatedMusicians(k));
+        assertSameInBothModes(() -> ecmMiner.musiciansHighestRatedAlbums("Jan Garbarek", k));
+    }
+
+    @Test
+    @DisplayName("Pushdown should rank musicians whose instruments were deleted and load results like the in-JVM path")
+    public void shouldAnswerLikeInJvmOnAFreshSession() {
+        dao.createOrUpdate(new MusicianInstrument(new Musician("Arvo Part"), Sets.newHashSet(new MusicalInstrument("Organ"))));
+        dao.deleteWhere(MusicalInstrument.class,
+                new Filters(new Filter("name", ComparisonOperator.EQUALS, "Organ")));
+
+        // every query on its own session, nothing is already loaded
+        Neo4jECMMiner pooled = new Neo4jECMMiner(new Neo4jDAO(sessionFactory, 2));
+        pooled.setMode(Neo4jECMMiner.Mode.IN_JVM);
+        List<Musician> expected = pooled.mostTalentedMusicians(10);
+        List<Musician> prolific = pooled.mostProlificMusicians(1, -1, -1);
+        pooled.setMode(Neo4jECMMiner.Mode.PUSHDOWN);
+        assertEquals(expected, pooled.mostTalentedMusicians(10));
+        assertEquals(arvo, expected.get(3));
+
+        List<Musician> pushedDown = pooled.mostProlificMusicians(1, -1, -1);
+        assertEquals(prolific, pushedDown);
+        assertEquals(4, prolific.get(0).getAlbums().size());
+        assertEquals(4, pushedDown.get(0).getAlbums().size());
+    }
+
+    @Test
+    @DisplayName("Pushdown should filter similar albums by genre and featured musician")
+    public void shouldFilterSimilarAlbums() {
+        List<Album> albums = ecmMiner.mostSimilarAlbums(10, "Jazz", "Charlie Haden");
+        assertEquals(1, albums.size());
+        assertEquals("Magico", albums.get(0).getAlbumName());
+
+        albums = ecmMiner.mostSimilarAlbums(10, "Jazz", "");
+        assertEquals(4, albums.size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 10})
+    @DisplayName("Pushdown should rank similar albums the same as the in-JVM path")
+    public void shouldRankSimilarAlbumsLikeInJvm(int k) {
+        assertSameInBothModes(() -> ecmMiner.mostSimilarAlbums(k, "Jazz", ""));
+        assertSameInBothModes(() -> ecmMiner.mostSimilarAlbums(k, "Jazz", "Keith Jarrett"));
+        assertSameInBothModes(() -> ecmMiner.mostSimilarAlbums(k, "Classical", "Arvo Part"));
+    }
+
+    @Test
+    @DisplayName("Pushdown should validate k like the in-JVM path")
+    public void shouldValidateK() {
+        assertThrows(IllegalArgumentException.class, () -> ecmMiner.mostProlificMusicians(0, -1, -1));
+        assertThrows(IllegalArgumentException.class, () -> ecmMiner.mostTalentedMusicians(0));
+        assertThrows(IllegalArgumentException.class, () -> ecmMiner.mostSocialMusicians(0));
+        assertTrue(ecmMiner.busiestYears(0).isEmpty());
+        assertTrue(ecmMiner.bestKSellingAlbums(-1).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Pushdown over a pooled DAO should answer concurrent queries")
+    public void shouldServeConcurrentQueriesFromThePool() throws Exception {
+        List<Musician> expected = ecmMiner.mostSocialMusicians(3);
+        List<Integer> expectedYears = ecmMiner.busiestYears(3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AsyncECMMiner async = new AsyncECMMiner(new Neo4jECMMiner(new Neo4jDAO(sessionFactory, 4)), executor);
+            List<CompletableFuture<List<Musician>>> musicians = Lists.newArrayList();
+            List<CompletableFuture<List<Integer>>> years = Lists.newArrayList();
+            for (int i = 0; i < 20; i++) {
+                musicians.add(async.mostSocialMusicians(3));
+                years.add(async.busiestYears(3));
+            }
+            for (CompletableFuture<List<Musician>> answer : musicians)
+                assertEquals(expected, answer.get());
+            for (CompletableFuture<List<Integer>> answer : years)
+                assertEquals(expectedYears, answer.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
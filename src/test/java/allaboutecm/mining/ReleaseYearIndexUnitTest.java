@@ -0,0 +1,67 @@
+package allaboutecm.mining;
+
+import allaboutecm.model.Album;
+import allaboutecm.model.Musician;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReleaseYearIndexUnitTest {
+    private Musician keith;
+    private Musician jan;
+    private Musician charlie;
+    private ReleaseYearIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        keith = new Musician("Keith Jarrett");
+        jan = new Musician("Jan Garbarek");
+        charlie = new Musician("Charlie Haden");
+        keith.setAlbums(Sets.newHashSet(
+                new Album(1975, "ECM 1064/65", "The Köln Concert"),
+                new Album(1974, "ECM 1050", "Belonging"),
+                new Album(1974, "ECM 1049", "Luminessence"),
+                new Album(1984, "ECM 1275", "Tabula Rasa")));
+        jan.setAlbums(Sets.newHashSet(
+                new Album(1979, "ECM 1151", "Magico"),
+                new Album(1980, "ECM 1170", "Folk Songs")));
+
+        index = ReleaseYearIndex.of(Lists.newArrayList(keith, jan, charlie));
+    }
+
+    @Test
+    @DisplayName("Count should only include albums released within the range, ignoring -1 bounds")
+    public void shouldCountAlbumsWithinRange() {
+        assertEquals(4, index.count(keith, -1, -1));
+        assertEquals(3, index.count(keith, 1974, 1975));
+        assertEquals(1, index.count(keith, 1976, -1));
+        assertEquals(2, index.count(keith, -1, 1974));
+        assertEquals(0, index.count(charlie, -1, -1));
+        assertEquals(0, index.count(new Musician("Arvo Part"), -1, -1));
+    }
+
+    @Test
+    @DisplayName("Most prolific should rank musicians by albums in range, ties by name")
+    public void shouldRankMostProlificWithinRange() {
+        assertEquals(Lists.newArrayList(keith, jan), index.mostProlific(2, -1, -1));
+        assertEquals(Lists.newArrayList(jan, charlie, keith), index.mostProlific(3, 1979, 1980));
+    }
+
+    @Test
+    @DisplayName("Putting a musician again should replace their years, removing should drop them")
+    public void shouldReplaceAndRemoveMusicians() {
+        charlie.setAlbums(Sets.newHashSet(new Album(1979, "ECM 1151", "Magico")));
+        index.put(charlie);
+        assertEquals(1, index.count(charlie, 1979, 1979));
+        assertEquals(3, index.size());
+
+        index.remove(keith);
+        assertEquals(2, index.size());
+        assertEquals(0, index.count(keith, -1, -1));
+        assertEquals(2, index.count(jan, -1, -1));
+    }
+}
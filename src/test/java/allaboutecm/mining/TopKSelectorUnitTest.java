@@ -0,0 +1,97 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopKSelectorUnitTest {
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1})
+    @DisplayName("Selector should throw IllegalArgumentException when k is smaller than one")
+    public void shouldThrowExceptionWhenKIsSmallerThanOne(int k) {
+        assertThrows(IllegalArgumentException.class, () -> new TopKSelector<String>(k, Comparator.naturalOrder()));
+    }
+
+    @Test
+    @DisplayName("Selector should return every item, highest score first, when fewer than k are offered")
+    public void shouldReturnAllItemsWhenFewerThanK() {
+        TopKSelector<String> selector = new TopKSelector<>(5, Comparator.naturalOrder());
+        selector.offer("a", 1);
+        selector.offer("b", 3);
+        selector.offer("c", 2);
+
+        assertEquals(Lists.newArrayList("b", "c", "a"), selector.toList());
+    }
+
+    @Test
+    @DisplayName("Selector should return exactly k items even when scores are tied across the cut")
+    public void shouldReturnExactlyKItemsWhenScoresAreTied() {
+        TopKSelector<String> selector = new TopKSelector<>(2, Comparator.naturalOrder());
+        selector.offer("d", 1);
+        selector.offer("c", 1);
+        selector.offer("b", 1);
+        selector.offer("a", 0);
+
+        assertEquals(Lists.newArrayList("b", "c"), selector.toList());
+    }
+
+    @Test
+    @DisplayName("Selector result should not depend on the order items are offered in")
+    public void shouldBeIndependentOfOfferOrder() {
+        List<Integer> values = Lists.newArrayList();
+        for (int i = 0; i < 500; i++)
+            values.add(i);
+
+        List<Integer> expected = null;
+        Random random = new Random(17);
+        for (int round = 0; round < 5; round++) {
+            Collections.shuffle(values, random);
+            TopKSelector<Integer> selector = new TopKSelector<>(20, Comparator.naturalOrder());
+            for (Integer value : values)
+                selector.offer(value, value % 7);
+            List<Integer> answer = selector.toList();
+            if (expected == null)
+                expected = answer;
+            assertEquals(expected, answer);
+        }
+        assertEquals(20, expected.size());
+        assertEquals(6, expected.get(0) % 7);
+        assertEquals(6, (int) expected.get(0));
+    }
+
+    @Test
+    @DisplayName("Calling toList should not consume the selector")
+    public void shouldKeepItemsAfterToList() {
+        TopKSelector<String> selector = new TopKSelector<>(2, Comparator.naturalOrder());
+        selector.offer("a", 1);
+        selector.offer("b", 2);
+        selector.toList();
+        selector.offer("c", 3);
+
+        assertEquals(Lists.newArrayList("c", "b"), selector.toList());
+    }
+
+    @Test
+    @DisplayName("Merged selectors should retain the same items as one selector over all of them")
+    public void shouldMergePartitions() {
+        TopKSelector<Integer> all = new TopKSelector<>(5, Comparator.naturalOrder());
+        TopKSelector<Integer> left = new TopKSelector<>(5, Comparator.naturalOrder());
+        TopKSelector<Integer> right = new TopKSelector<>(5, Comparator.naturalOrder());
+        for (int value = 0; value < 40; value++) {
+            all.offer(value, value % 9);
+            (value < 13 ? left : right).offer(value, value % 9);
+        }
+
+        assertEquals(all.toList(), left.merge(right).toList());
+    }
+}
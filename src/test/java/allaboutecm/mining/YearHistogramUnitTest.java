@@ -0,0 +1,99 @@
+package allaboutecm.mining;
+
+import com.google.common.collect.Lists;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class YearHistogramUnitTest {
+
+    @Test
+    @DisplayName("Histogram should count albums per year")
+    public void shouldCountAlbumsPerYear() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(1973);
+        histogram.add(1973);
+        histogram.add(1995);
+
+        assertEquals(2, histogram.count(1973));
+        assertEquals(1, histogram.count(1995));
+        assertEquals(0, histogram.count(1980));
+        assertEquals(0, histogram.count(1800));
+    }
+
+    @Test
+    @DisplayName("Histogram should keep years outside of the default range")
+    public void shouldGrowForYearsOutsideOfRange() {
+        YearHistogram histogram = new YearHistogram(1970, 1980);
+        histogram.add(1960);
+        histogram.add(1990);
+        histogram.add(1975);
+
+        assertEquals(1, histogram.count(1960));
+        assertEquals(1, histogram.count(1990));
+        assertEquals(1, histogram.count(1975));
+    }
+
+    @Test
+    @DisplayName("Top years should be ordered from busiest, ties from the earliest year")
+    public void shouldReturnTopYearsBusiestFirst() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(2006);
+        histogram.add(2006);
+        histogram.add(1979);
+        histogram.add(1995);
+        histogram.add(1995);
+        histogram.add(1973);
+        histogram.add(1973);
+        histogram.add(1973);
+
+        assertEquals(Lists.newArrayList(1973, 1995, 2006), histogram.topYears(3));
+        assertEquals(Lists.newArrayList(1973, 1995, 2006, 1979), histogram.topYears(10));
+        assertTrue(histogram.topYears(0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Merged histograms should equal a histogram over all albums")
+    public void shouldMergePartitions() {
+        YearHistogram first = new YearHistogram();
+        first.add(1973);
+        first.add(1995);
+        YearHistogram second = new YearHistogram(1950, 1960);
+        second.add(1955);
+        second.add(1955);
+
+        first.merge(second);
+
+        assertEquals(1, first.count(1973));
+        assertEquals(2, first.count(1955));
+        assertEquals(Lists.newArrayList(1955, 1973, 1995), first.topYears(3));
+    }
+
+    @Test
+    @DisplayName("Cleared histogram should be empty and reusable")
+    public void shouldBeReusableAfterClear() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(1973);
+        histogram.clear();
+        histogram.add(1995);
+
+        assertEquals(0, histogram.count(1973));
+        assertEquals(Lists.newArrayList(1995), histogram.topYears(2));
+    }
+
+    @Test
+    @DisplayName("Removed albums should no longer be counted, counts never go below zero")
+    public void shouldTakeBackRemovedAlbums() {
+        YearHistogram histogram = new YearHistogram();
+        histogram.add(1973);
+        histogram.add(1973);
+        histogram.remove(1973);
+        histogram.remove(1995);
+        histogram.remove(1800);
+
+        assertEquals(1, histogram.count(1973));
+        assertEquals(0, histogram.count(1995));
+        assertEquals(Lists.newArrayList(1973), histogram.topYears(2));
+    }
+}